@@ -1,32 +1,80 @@
 import shared.AbstractModule;
+import modulehub.Cli;
+import modulehub.InstallJob;
+import modulehub.InstalledModules;
+import modulehub.ModuleCatalog;
+import modulehub.ModuleHub;
+import modulehub.SearchIndex;
+import modulehub.SourceResult;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Main extends AbstractModule {
 
-    private static final String MANIFEST_URL = "https://pastebin.com/raw/cPymZmpb";
+    /** Successful jobs stay in the jobs list this long, so their completion is seen. */
+    private static final long DONE_JOB_LINGER_MS = 5000;
+    /** Failed and cancelled jobs stay listed until the list grows past this many jobs. */
+    private static final int MAX_LISTED_JOBS = 50;
 
     private JFrame frame;
     private JList<String> moduleList;
-    private DefaultListModel<String> moduleListModel;
+    private ModuleListModel moduleListModel;
+    private JLabel sourceStatusLabel;
+    private JTextField filterField;
+    private JCheckBox compatibleOnlyBox;
+    /** Releases currently shown in the version list, index for index. */
+    private final List<ModuleCatalog.Release> shownReleases = new ArrayList<>();
+    /** Search index over the catalog; only touched on the EDT. */
+    private SearchIndex searchIndex = new SearchIndex();
     private JList<String> versionList;
+    private JScrollPane versionScrollPane;
     private DefaultListModel<String> versionListModel;
     private JTextArea descriptionArea;
     private JButton downloadButton;
-    private JSONArray modulesArray;
+    private JButton updateAllButton;
+    private JLabel prefetchLabel;
+    private JList<InstallJob> jobList;
+    private DefaultListModel<InstallJob> jobListModel;
+    private Timer jobRefreshTimer;
+    private ModuleCatalog catalog = ModuleCatalog.EMPTY;
+    /** Runs catalog work (older release pages, evicted descriptions) off the EDT. */
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Repository manifests fetched during the initial load, waiting to be merged on the EDT. */
+    private final Queue<SourceResult> pendingSources = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sourceFlushScheduled = new AtomicBoolean();
+    /** Builds the catalog as repository manifests arrive; only touched on the EDT. */
+    private ModuleCatalog.Builder loadingCatalog;
+    /** Load status of each repository manifest, in index order; only touched on the EDT. */
+    private final Map<String, String> sourceStatus = new LinkedHashMap<>();
+    /** Modules whose next release page is being fetched; only touched on the EDT. */
+    private final Set<String> loadingModules = new HashSet<>();
+    private final ModuleHub hub = new ModuleHub(getVersion(), true);
 
     public Main() {
+        // Not done on the calling thread, which would otherwise wait for the JMX classes to load.
+        Thread jmxRegistration = new Thread(hub::registerWithJmx, "jmx-registration");
+        jmxRegistration.setDaemon(true);
+        jmxRegistration.start();
         createAndShowGUI();
         loadManifest();
     }
@@ -65,6 +113,10 @@ public class Main extends AbstractModule {
 
     @Override
     protected void onClose() {
+        hub.close();
+        if (jobRefreshTimer != null) {
+            jobRefreshTimer.stop();
+        }
         if (frame != null) {
             frame.dispose();
             frame = null;
@@ -89,16 +141,39 @@ public class Main extends AbstractModule {
 
         // Split pane for Modules and Versions lists.
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
-        moduleListModel = new DefaultListModel<>();
+        moduleListModel = new ModuleListModel();
         moduleList = new JList<>(moduleListModel);
+        moduleList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                String badge = installBadge(catalog.getModule((String) value));
+                return super.getListCellRendererComponent(list, badge == null ? value : value + "  [" + badge + "]",
+                        index, isSelected, cellHasFocus);
+            }
+        });
         JScrollPane moduleScrollPane = new JScrollPane(moduleList);
-        moduleScrollPane.setBorder(BorderFactory.createTitledBorder("Modules"));
-        splitPane.setLeftComponent(moduleScrollPane);
+        filterField = new JTextField();
+        filterField.setToolTipText("Filter by module name, tag or release notes");
+        compatibleOnlyBox = new JCheckBox("Compatible only");
+        JPanel filterPanel = new JPanel(new BorderLayout());
+        filterPanel.add(filterField, BorderLayout.CENTER);
+        filterPanel.add(compatibleOnlyBox, BorderLayout.EAST);
+        JPanel modulePanel = new JPanel(new BorderLayout());
+        modulePanel.setBorder(BorderFactory.createTitledBorder("Modules"));
+        modulePanel.add(filterPanel, BorderLayout.NORTH);
+        modulePanel.add(moduleScrollPane, BorderLayout.CENTER);
+        splitPane.setLeftComponent(modulePanel);
         splitPane.setDividerLocation(300);
 
         versionListModel = new DefaultListModel<>();
         versionList = new JList<>(versionListModel);
-        JScrollPane versionScrollPane = new JScrollPane(versionList);
+        versionScrollPane = new JScrollPane(versionList);
+        versionScrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                maybeLoadMoreReleases();
+            }
+        });
         versionScrollPane.setBorder(BorderFactory.createTitledBorder("Versions"));
         splitPane.setRightComponent(versionScrollPane);
 
@@ -116,12 +191,45 @@ public class Main extends AbstractModule {
 
         frame.add(centerPanel, BorderLayout.CENTER);
 
-        // Bottom panel: Download button.
-        JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        // Manifest load status; the tooltip lists every repository.
+        sourceStatusLabel = new JLabel("Loading manifest index...");
+        sourceStatusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        frame.add(sourceStatusLabel, BorderLayout.NORTH);
+
+        // Bottom panel: install jobs and buttons.
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        jobListModel = new DefaultListModel<>();
+        jobList = new JList<>(jobListModel);
+        JScrollPane jobScrollPane = new JScrollPane(jobList);
+        jobScrollPane.setBorder(BorderFactory.createTitledBorder("Installs"));
+        jobScrollPane.setPreferredSize(new Dimension(600, 110));
+        bottomPanel.add(jobScrollPane, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        prefetchLabel = new JLabel();
+        buttonPanel.add(prefetchLabel);
+        updateAllButton = new JButton("Update All Outdated");
+        JButton cancelButton = new JButton("Cancel Selected");
+        JButton rollbackButton = new JButton("Roll Back");
         downloadButton = new JButton("Download & Unzip");
-        bottomPanel.add(downloadButton);
+        buttonPanel.add(updateAllButton);
+        buttonPanel.add(cancelButton);
+        buttonPanel.add(rollbackButton);
+        buttonPanel.add(downloadButton);
+        bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
         frame.add(bottomPanel, BorderLayout.SOUTH);
 
+        // Job state is written by worker threads; the list is simply repainted on the EDT.
+        jobRefreshTimer = new Timer(250, e -> {
+            pruneJobList();
+            jobList.repaint();
+            String prefetchStatus = hub.prefetchStatus();
+            if (prefetchStatus != null) {
+                prefetchLabel.setText(prefetchStatus);
+            }
+        });
+        jobRefreshTimer.start();
+
         // Listeners for selections and download action.
         moduleList.addListSelectionListener((ListSelectionEvent e) -> {
             if (!e.getValueIsAdjusting()) {
@@ -133,275 +241,329 @@ public class Main extends AbstractModule {
                 updateDescription();
             }
         });
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                populateModuleList();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                populateModuleList();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                populateModuleList();
+            }
+        });
+        compatibleOnlyBox.addActionListener(e -> {
+            populateModuleList();
+            populateVersionList();
+        });
         downloadButton.addActionListener(e -> downloadAndUnzipModule());
+        updateAllButton.addActionListener(e -> updateAllOutdated());
+        rollbackButton.addActionListener(e -> rollbackSelectedModule());
+        cancelButton.addActionListener(e -> {
+            for (InstallJob job : jobList.getSelectedValuesList()) {
+                hub.cancel(job);
+            }
+        });
     }
 
+    /**
+     * Drops jobs that completed successfully a while ago, then the oldest finished jobs while the list
+     * is over its cap. Queued and running jobs are always kept.
+     */
+    private void pruneJobList() {
+        for (int i = jobListModel.size() - 1; i >= 0; i--) {
+            if (jobListModel.get(i).millisSinceDone() >= DONE_JOB_LINGER_MS) {
+                jobListModel.remove(i);
+            }
+        }
+        for (int i = 0; i < jobListModel.size() && jobListModel.size() > MAX_LISTED_JOBS; ) {
+            if (jobListModel.get(i).isFinished()) {
+                jobListModel.remove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Loads the manifest on a background thread. Modules are appended to the list as each repository's
+     * manifest arrives, so the window is usable immediately whatever the network latency.
+     */
     private void loadManifest() {
-        try {
-            String manifestLinksText = fetchContentFromURL(MANIFEST_URL).trim();
-            // Using a lookahead regex to split on each new URL.
-            String[] manifestLinks = manifestLinksText.split("(?=https://)");
-            modulesArray = new JSONArray();
-
-            // Process each URL from the manifest.
-            for (String link : manifestLinks) {
-                link = link.trim();
-                if (!link.isEmpty()) {
-                    try {
-                        String manifestJson = fetchContentFromURL(link).trim();
-                        if (manifestJson.startsWith("[")) {
-                            JSONArray releases = new JSONArray(manifestJson);
-                            for (int i = 0; i < releases.length(); i++) {
-                                JSONObject release = releases.getJSONObject(i);
-                                
-                                // Get both tag and release name.
-                                String tagName = release.optString("tag_name", "unknown");
-                                String releaseName = release.optString("name", "").trim();
-                                if (releaseName.isEmpty()) {
-                                    releaseName = "Unknown Release Title";
-                                }
-                                // Build a combined display string.
-                                String displayName = releaseName + " (" + tagName + ")";
-                                
-                                // Extract module name from the URL.
-                                String moduleName = extractRepositoryName(link);
-                                String description = release.optString("body", "No description available.");
-
-                                // Check compatibility by searching for the marker.
-                                String compatibilityMarker = "#AbstractModule-" + getVersion();
-                                boolean isCompatible = description.contains(compatibilityMarker);
-                                if (!isCompatible) {
-                                    displayName = displayName + " (incompatible)";
-                                }
-
-                                String zipUrl = release.optString("zipball_url", "");
-                                String htmlUrl = release.optString("html_url", "No URL available.");
-
-                                // Create the version object.
-                                JSONObject versionObj = new JSONObject();
-                                versionObj.put("version", displayName);
-                                versionObj.put("downloadUrl", zipUrl);
-                                versionObj.put("description", description + "\n\nGitHub URL: " + htmlUrl);
-
-                                // Check if a module with the same name already exists.
-                                JSONObject existingModule = null;
-                                for (int j = 0; j < modulesArray.length(); j++) {
-                                    JSONObject mod = modulesArray.getJSONObject(j);
-                                    if (mod.optString("name").equals(moduleName)) {
-                                        existingModule = mod;
-                                        break;
-                                    }
-                                }
-                                if (existingModule != null) {
-                                    // Add the version to the existing module.
-                                    existingModule.getJSONArray("versions").put(versionObj);
-                                } else {
-                                    // Create a new module object.
-                                    JSONObject moduleObj = new JSONObject();
-                                    moduleObj.put("name", moduleName);
-                                    moduleObj.put("latestVersion", displayName);
-                                    JSONArray versionsArray = new JSONArray();
-                                    versionsArray.put(versionObj);
-                                    moduleObj.put("versions", versionsArray);
-                                    modulesArray.put(moduleObj);
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error processing manifest URL " + link + ": " + e.getMessage());
-                    }
+        loadingCatalog = new ModuleCatalog.Builder();
+        Thread loader = new Thread(() -> {
+            try {
+                // With a cached index the list is drawn from disk first and revalidated afterwards.
+                boolean cached = hub.isIndexCached();
+                hub.buildCatalog(cached, this::offerSource);
+                ModuleCatalog refreshed = cached ? hub.revalidateManifest() : null;
+                if (refreshed != null) {
+                    SearchIndex refreshedIndex = SearchIndex.of(refreshed);
+                    SwingUtilities.invokeLater(() -> {
+                        catalog = refreshed;
+                        searchIndex = refreshedIndex;
+                        populateModuleList();
+                        updateOutdatedCount();
+                    });
                 }
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(() -> sourceStatusLabel.setText("Error loading manifest index: " + ex.getMessage()));
             }
+        }, "manifest-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
 
-            // Populate the module list (left panel) with unique module names.
-            moduleListModel.clear();
-            for (int i = 0; i < modulesArray.length(); i++) {
-                JSONObject moduleObj = modulesArray.getJSONObject(i);
-                String moduleName = moduleObj.optString("name", "Unnamed Module");
-                moduleListModel.addElement(moduleName);
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(frame, "Error loading manifest: " + ex.getMessage());
+    /**
+     * Queues a repository result for the EDT. Results arriving while a flush is pending are merged
+     * into that flush, so a burst of fast repositories costs one list event rather than one per module.
+     */
+    private void offerSource(SourceResult result) {
+        pendingSources.add(result);
+        if (sourceFlushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::flushSources);
         }
     }
 
-    private String extractRepositoryName(String url) {
-        try {
-            URL parsedUrl = new URL(url);
-            String[] pathSegments = parsedUrl.getPath().split("/");
-            if (pathSegments.length >= 4) {
-                String repoName = pathSegments[3];
-                return formatRepositoryName(repoName);
+    private void flushSources() {
+        // Cleared before draining, so a result queued during the drain schedules another flush.
+        sourceFlushScheduled.set(false);
+        String selected = moduleList.getSelectedValue();
+        boolean selectedChanged = false;
+        List<String> added = new ArrayList<>();
+        Set<String> known = new HashSet<>();
+        SourceResult result;
+        while ((result = pendingSources.poll()) != null) {
+            if (result.entry == null && result.error == null) {
+                sourceStatus.put(result.link, "loading");
+                continue;
+            }
+            if (result.error != null) {
+                sourceStatus.put(result.link, "failed: " + result.error);
+                continue;
+            }
+            sourceStatus.put(result.link, result.entry.releases.size() + " releases");
+            if (result.entry.releases.isEmpty()) {
+                continue;
+            }
+            String name = result.entry.name;
+            loadingCatalog.add(result.entry, result.position);
+            searchIndex.add(result.document, result.position);
+            if (catalog.getModule(name) == null && known.add(name)) {
+                added.add(name);
+            }
+            selectedChanged |= name.equals(selected);
+        }
+        if (!added.isEmpty() || selectedChanged) {
+            catalog = loadingCatalog.build();
+            if (isFiltered()) {
+                populateModuleList();
+            } else if (!added.isEmpty()) {
+                moduleListModel.insertAll(catalogNames());
+            }
+            updateOutdatedCount();
+            if (selectedChanged) {
+                // Another repository contributed releases to the module being viewed.
+                populateVersionList();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return "Unknown Module";
+        updateSourceStatus();
     }
 
-    private String formatRepositoryName(String repoName) {
-        if (repoName.endsWith("-")) {
-            repoName = repoName.substring(0, repoName.length() - 1);
-        }
-        int dashIndex = repoName.indexOf('-');
-        if (dashIndex > 0) {
-            String mainPart = repoName.substring(0, dashIndex);
-            String secondary = repoName.substring(dashIndex + 1).trim();
-            // Only add parentheses if the secondary part is "Legacy"
-            if (secondary.equalsIgnoreCase("Legacy")) {
-                return mainPart + " (" + secondary + ")";
-            } else {
-                return mainPart + " " + secondary;
+    private void updateSourceStatus() {
+        int loading = 0;
+        int failed = 0;
+        StringBuilder tooltip = new StringBuilder("<html>");
+        for (Map.Entry<String, String> entry : sourceStatus.entrySet()) {
+            if (entry.getValue().equals("loading")) {
+                loading++;
+            } else if (entry.getValue().startsWith("failed")) {
+                failed++;
             }
+            tooltip.append(escapeHtml(ModuleHub.extractRepositoryName(entry.getKey()))).append(": ")
+                    .append(escapeHtml(entry.getValue())).append("<br>");
+        }
+        int total = sourceStatus.size();
+        String text = loading > 0
+                ? "Loading manifests: " + (total - loading) + " of " + total + " repositories"
+                : "Loaded " + (total - failed) + " of " + total + " repositories";
+        sourceStatusLabel.setText(failed > 0 ? text + ", " + failed + " failed (hover for details)" : text);
+        sourceStatusLabel.setToolTipText(tooltip.append("</html>").toString());
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private void populateModuleList() {
+        // Populate the module list (left panel) with the modules matching the filter, keeping the selection.
+        String selected = moduleList.getSelectedValue();
+        List<String> names;
+        if (isFiltered()) {
+            names = searchIndex.search(filterField.getText(), compatibleOnlyBox.isSelected());
         } else {
-            return repoName;
+            names = catalogNames();
+        }
+        moduleListModel.setAll(names);
+        if (selected != null && names.contains(selected)) {
+            moduleList.setSelectedValue(selected, false);
         }
     }
 
-    private void populateVersionList() {
-        versionListModel.clear();
-        int moduleIndex = moduleList.getSelectedIndex();
-        if (moduleIndex == -1) return;
-        try {
-            JSONObject moduleObj = modulesArray.getJSONObject(moduleIndex);
-            JSONArray versions = moduleObj.getJSONArray("versions");
-            int bestIndex = -1;
-            String bestTag = "";
-            for (int i = 0; i < versions.length(); i++) {
-                JSONObject versionObj = versions.getJSONObject(i);
-                String versionStr = versionObj.optString("version", "Unknown");
-                versionListModel.addElement(versionStr);
-                
-                // Determine compatibility: if version string contains " (incompatible)", it's not compatible.
-                boolean isCompatible = !versionStr.contains(" (incompatible)");
-                // Remove the incompatibility suffix for comparison.
-                String cleanDisplay = versionStr.replace(" (incompatible)", "").trim();
-                // Extract just the tag (i.e. text between parentheses) for comparison.
-                String currentTag = extractTag(cleanDisplay);
-                if (isCompatible) {
-                    if (bestIndex == -1) {
-                        bestIndex = i;
-                        bestTag = currentTag;
-                    } else {
-                        // Compare using only the tag portion.
-                        int cmp = compareVersions(currentTag, bestTag);
-                        if (cmp > 0) {
-                            bestIndex = i;
-                            bestTag = currentTag;
-                        }
-                    }
-                }
-            }
-            // If no compatible version was found, default to the first version.
-            if (bestIndex == -1 && versionListModel.getSize() > 0) {
-                bestIndex = 0;
-            }
-            if (bestIndex != -1) {
-                versionList.setSelectedIndex(bestIndex);
-            }
-        } catch (JSONException ex) {
-            ex.printStackTrace();
+    private List<String> catalogNames() {
+        List<String> names = new ArrayList<>(catalog.modules.size());
+        for (ModuleCatalog.ModuleEntry module : catalog.modules) {
+            names.add(module.name);
         }
+        return names;
+    }
+
+    private boolean isFiltered() {
+        return compatibleOnlyBox.isSelected() || !filterField.getText().trim().isEmpty();
     }
 
     /**
-     * Extracts the tag from a display string.
-     * For example, for "Initial Release (v1.0.0)" it returns "v1.0.0".
+     * Fetches the next page of releases for every repository of a module that has more, in the
+     * background, and swaps the extended entry into the catalog on the EDT.
      */
-    private String extractTag(String display) {
-        int open = display.indexOf('(');
-        int close = display.indexOf(')');
-        if (open != -1 && close != -1 && close > open) {
-            return display.substring(open + 1, close);
+    private void loadMoreReleases(ModuleCatalog.ModuleEntry module) {
+        if (module.nextPageUrls.isEmpty() || !loadingModules.add(module.name)) {
+            return;
         }
-        return display;
+        backgroundExecutor.execute(() -> {
+            ModuleCatalog.ModuleEntry extended = hub.fetchNextReleasePages(module);
+            SearchIndex.Document document = SearchIndex.documentOf(extended);
+            SwingUtilities.invokeLater(() -> {
+                loadingModules.remove(module.name);
+                if (catalog.getModule(module.name) != module) {
+                    return; // The module was rebuilt in the meantime.
+                }
+                // Folded into the loading catalog too, so rebuilding it as manifests arrive keeps these pages.
+                if (loadingCatalog != null) {
+                    loadingCatalog.replace(extended);
+                }
+                catalog = catalog.withModule(extended);
+                searchIndex.add(document);
+                updateOutdatedCount();
+                if (getSelectedModule() == extended) {
+                    for (int i = module.releases.size(); i < extended.releases.size(); i++) {
+                        showRelease(extended.releases.get(i));
+                    }
+                }
+            });
+        });
     }
 
     /**
-     * Compares two version strings (e.g., "v2.0.0" vs. "v1.8.3").
-     * Returns a positive number if v1 > v2, negative if v1 < v2, or 0 if equal.
+     * Loads older releases once the versions list is scrolled to its end or does not fill its viewport.
      */
-    private int compareVersions(String v1, String v2) {
-        // Remove leading 'v' or 'V' if present.
-        if (v1.startsWith("v") || v1.startsWith("V")) {
-            v1 = v1.substring(1);
-        }
-        if (v2.startsWith("v") || v2.startsWith("V")) {
-            v2 = v2.substring(1);
-        }
-        String[] parts1 = v1.split("\\.");
-        String[] parts2 = v2.split("\\.");
-        int len = Math.max(parts1.length, parts2.length);
-        for (int i = 0; i < len; i++) {
-            int num1 = i < parts1.length ? parseVersionPart(parts1[i]) : 0;
-            int num2 = i < parts2.length ? parseVersionPart(parts2[i]) : 0;
-            if (num1 != num2) {
-                return num1 - num2;
-            }
+    private void maybeLoadMoreReleases() {
+        ModuleCatalog.ModuleEntry module = getSelectedModule();
+        if (module == null || module.nextPageUrls.isEmpty()) {
+            return;
+        }
+        JScrollBar scrollBar = versionScrollPane.getVerticalScrollBar();
+        if (scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum()) {
+            loadMoreReleases(module);
+        }
+    }
+
+    private ModuleCatalog.ModuleEntry getSelectedModule() {
+        String moduleName = moduleList.getSelectedValue();
+        return moduleName == null ? null : catalog.getModule(moduleName);
+    }
+
+    private ModuleCatalog.Release getSelectedRelease() {
+        int versionIndex = versionList.getSelectedIndex();
+        return versionIndex == -1 ? null : shownReleases.get(versionIndex);
+    }
+
+    private void populateVersionList() {
+        versionListModel.clear();
+        shownReleases.clear();
+        ModuleCatalog.ModuleEntry module = getSelectedModule();
+        if (module == null) {
+            hub.cancelPrefetch();
+            return;
+        }
+        for (ModuleCatalog.Release release : module.releases) {
+            showRelease(release);
         }
-        return 0;
+        // The best compatible release (or the first one, if none is compatible) is precomputed by the catalog.
+        if (module.bestIndex != -1 && shownReleases.contains(module.releases.get(module.bestIndex))) {
+            versionList.setSelectedIndex(shownReleases.indexOf(module.releases.get(module.bestIndex)));
+        }
+        hub.prefetchBestRelease(module);
+        // Fill the viewport if the first page is too short to scroll.
+        SwingUtilities.invokeLater(this::maybeLoadMoreReleases);
     }
 
     /**
-     * Parses a part of a version string to an integer.
-     * If the part cannot be parsed (e.g., it contains non-numeric characters), it returns 0.
+     * Appends a release to the version list unless the "compatible only" facet hides it.
      */
-    private int parseVersionPart(String part) {
-        try {
-            // Remove any non-digit characters.
-            part = part.replaceAll("[^0-9]", "");
-            return Integer.parseInt(part);
-        } catch (NumberFormatException e) {
-            return 0;
+    private void showRelease(ModuleCatalog.Release release) {
+        if (release.compatible || !compatibleOnlyBox.isSelected()) {
+            shownReleases.add(release);
+            versionListModel.addElement(release.displayName);
         }
     }
 
     private void updateDescription() {
-        int moduleIndex = moduleList.getSelectedIndex();
-        int versionIndex = versionList.getSelectedIndex();
-        if (moduleIndex == -1 || versionIndex == -1) {
+        ModuleCatalog.Release release = getSelectedRelease();
+        if (release == null) {
             descriptionArea.setText("");
             return;
         }
-        try {
-            JSONObject moduleObj = modulesArray.getJSONObject(moduleIndex);
-            JSONArray versions = moduleObj.getJSONArray("versions");
-            JSONObject versionObj = versions.getJSONObject(versionIndex);
-            String description = versionObj.optString("description", "No description available.");
-            descriptionArea.setText(description);
-            // Set caret position to the top so that the beginning of the description is visible.
-            descriptionArea.setCaretPosition(0);
-        } catch (JSONException ex) {
-            ex.printStackTrace();
-        }
-    }
-
-    private String fetchContentFromURL(String urlStr) throws Exception {
-        StringBuilder sb = new StringBuilder();
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
+        String body = release.getBody();
+        if (body != null) {
+            showDescription(release, body);
+            return;
         }
-        return sb.toString();
+        // The body was evicted; reload it from its (normally cached) release page.
+        descriptionArea.setText("Loading description...");
+        backgroundExecutor.execute(() -> {
+            String reloaded = "No description available.";
+            try {
+                for (ModuleCatalog.Release pageRelease : hub.fetchReleasePage(release.sourceUrl, true)) {
+                    if (pageRelease.tag.equals(release.tag)) {
+                        reloaded = pageRelease.getBody();
+                        release.setBody(reloaded);
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+            }
+            String description = reloaded;
+            SwingUtilities.invokeLater(() -> {
+                if (getSelectedRelease() == release) {
+                    showDescription(release, description);
+                }
+            });
+        });
+    }
+
+    private void showDescription(ModuleCatalog.Release release, String body) {
+        descriptionArea.setText(body + "\n\nGitHub URL: " + release.htmlUrl);
+        // Set caret position to the top so that the beginning of the description is visible.
+        descriptionArea.setCaretPosition(0);
     }
 
     private void downloadAndUnzipModule() {
-        int moduleIndex = moduleList.getSelectedIndex();
-        int versionIndex = versionList.getSelectedIndex();
-        if (moduleIndex == -1 || versionIndex == -1) {
+        ModuleCatalog.ModuleEntry module = getSelectedModule();
+        ModuleCatalog.Release release = getSelectedRelease();
+        if (module == null || release == null) {
             JOptionPane.showMessageDialog(frame, "Please select a module and version first.");
             return;
         }
-        // Get the selected version string from the model.
-        String selectedVersion = versionListModel.getElementAt(versionIndex);
         // If the version is marked as incompatible, ask for confirmation.
-        if (selectedVersion.contains(" (incompatible)")) {
+        if (!release.compatible) {
             int result = JOptionPane.showConfirmDialog(
                 frame,
                 "The selected version is marked as incompatible.\nDo you want to proceed?",
@@ -413,97 +575,192 @@ public class Main extends AbstractModule {
                 return; // Cancel the download.
             }
         }
-        new Thread(() -> {
-            try {
-                JSONObject moduleObj = modulesArray.getJSONObject(moduleIndex);
-                JSONArray versions = moduleObj.getJSONArray("versions");
-                JSONObject versionObj = versions.getJSONObject(versionIndex);
-                String downloadUrl = versionObj.optString("downloadUrl", "");
-                if (downloadUrl.isEmpty()) {
-                    SwingUtilities.invokeLater(() ->
-                        JOptionPane.showMessageDialog(frame, "No download URL available for this version.")
-                    );
-                    return;
-                }
-                String moduleName = moduleObj.optString("name", "Unnamed Module");
-                String userHome = System.getProperty("user.home");
-                String targetDirectoryPath = userHome + File.separator + "Documents" + File.separator
-                        + "echelon" + File.separator + "desktop" + File.separator + "module"
-                        + File.separator + moduleName;
-                File targetDirectory = new File(targetDirectoryPath);
-                if (!targetDirectory.exists()) {
-                    targetDirectory.mkdirs();
-                }
-                File tempZipFile = File.createTempFile("module", ".zip");
-                downloadFile(downloadUrl, tempZipFile);
-                unzipFile(tempZipFile, targetDirectory, moduleName);
-                tempZipFile.delete();
-                SwingUtilities.invokeLater(() ->
-                    JOptionPane.showMessageDialog(frame, "Module downloaded and extracted to:\n" + targetDirectoryPath)
-                );
-            } catch (Exception ex) {
-                ex.printStackTrace();
+        if (release.downloadUrl.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "No download URL available for this version.");
+            return;
+        }
+        enqueueInstall(module, release, ModuleHub.PRIORITY_USER, true);
+    }
+
+    /**
+     * Queues a rollback of the selected module to the version its last install replaced. It runs as an
+     * install job, so it never overlaps an install of the same module.
+     */
+    private void rollbackSelectedModule() {
+        ModuleCatalog.ModuleEntry module = getSelectedModule();
+        if (module == null) {
+            JOptionPane.showMessageDialog(frame, "Please select a module first.");
+            return;
+        }
+        String moduleName = module.name;
+        if (!hub.hasPreviousVersion(moduleName)) {
+            JOptionPane.showMessageDialog(frame, "No previous version of " + moduleName + " is kept.");
+            return;
+        }
+        InstalledModules.Record previous = hub.previouslyInstalled(moduleName);
+        InstallJob job = new InstallJob(moduleName, previous == null ? "(not installed)" : previous.tag,
+                ModuleHub.PRIORITY_USER, j -> {
+            InstallJob.setStatus(j, "Rolling back");
+            hub.rollback(moduleName);
+            SwingUtilities.invokeLater(() -> {
+                updateOutdatedCount();
+                moduleList.repaint();
+            });
+        });
+        job.onFailure = ex -> SwingUtilities.invokeLater(() ->
+            JOptionPane.showMessageDialog(frame, "Error rolling back " + moduleName + ": " + ex.getMessage())
+        );
+        if (hub.submit(job) != job) {
+            JOptionPane.showMessageDialog(frame, moduleName + " is already queued for installation.");
+            return;
+        }
+        jobListModel.addElement(job);
+    }
+
+    /**
+     * Queues every installed module whose best compatible release is newer than the installed tag.
+     */
+    private void updateAllOutdated() {
+        int queued = 0;
+        for (ModuleCatalog.ModuleEntry module : catalog.modules) {
+            ModuleCatalog.Release best = module.bestIndex == -1 ? null : module.releases.get(module.bestIndex);
+            if (hub.isOutdated(module) && !best.downloadUrl.isEmpty()) {
+                enqueueInstall(module, best, ModuleHub.PRIORITY_BATCH, false);
+                queued++;
+            }
+        }
+        if (queued == 0) {
+            JOptionPane.showMessageDialog(frame, "All installed modules are up to date.");
+        }
+    }
+
+    /**
+     * Returns the list badge for a module: "outdated" or "installed" with the installed tag, or
+     * "incompatible" if no release supports this version; null for a plain uninstalled module.
+     */
+    private String installBadge(ModuleCatalog.ModuleEntry module) {
+        if (module == null) {
+            return null;
+        }
+        InstalledModules.Record installed = hub.installed(module.name);
+        boolean compatible = module.bestIndex != -1 && module.releases.get(module.bestIndex).compatible;
+        if (!compatible) {
+            return installed == null ? "incompatible" : "installed " + installed.tag + ", incompatible";
+        }
+        if (installed == null) {
+            return null;
+        }
+        return hub.isOutdated(module) ? "outdated: " + installed.tag + " -> " + module.releases.get(module.bestIndex).tag
+                : "installed " + installed.tag;
+    }
+
+    /**
+     * Shows the number of outdated modules on the update button and repaints the badges.
+     */
+    private void updateOutdatedCount() {
+        int outdated = 0;
+        for (String moduleName : hub.installedNames()) {
+            ModuleCatalog.ModuleEntry module = catalog.getModule(moduleName);
+            if (module != null && hub.isOutdated(module)) {
+                outdated++;
+            }
+        }
+        updateAllButton.setText(outdated == 0 ? "Update All Outdated" : "Update All Outdated (" + outdated + ")");
+        moduleList.repaint();
+    }
+
+    private void enqueueInstall(ModuleCatalog.ModuleEntry module, ModuleCatalog.Release release, int priority,
+                                boolean notify) {
+        String moduleName = module.name;
+        String targetDirectoryPath = ModuleHub.getModuleDirectory(moduleName).getPath();
+        InstallJob job = new InstallJob(moduleName, release.tag, priority, j -> {
+            String digest = hub.install(moduleName, release, j);
+            SwingUtilities.invokeLater(this::updateOutdatedCount);
+            if (notify) {
                 SwingUtilities.invokeLater(() ->
-                    JOptionPane.showMessageDialog(frame, "Error downloading and unzipping module: " + ex.getMessage())
+                    JOptionPane.showMessageDialog(frame, "Module downloaded and extracted to:\n" + targetDirectoryPath
+                            + "\n\nSHA-256: " + digest)
                 );
             }
-        }).start();
-    }
-
-    private void downloadFile(String urlStr, File destination) throws Exception {
-        URL url = new URL(urlStr);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        try (InputStream in = connection.getInputStream();
-             FileOutputStream out = new FileOutputStream(destination)) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+        });
+        if (notify) {
+            job.onFailure = ex -> SwingUtilities.invokeLater(() ->
+                JOptionPane.showMessageDialog(frame, "Error downloading and unzipping module: " + ex.getMessage())
+            );
+        }
+        if (hub.submit(job) != job) {
+            if (notify) {
+                JOptionPane.showMessageDialog(frame, moduleName + " is already queued for installation.");
             }
+            return;
         }
+        jobListModel.addElement(job);
     }
 
-    private void unzipFile(File zipFile, File destDir, String moduleName) throws Exception {
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
-            ZipEntry entry;
-            byte[] buffer = new byte[4096];
-            while ((entry = zis.getNextEntry()) != null) {
-                if (entry.isDirectory()) {
-                    zis.closeEntry();
-                    continue;
-                }
-                String entryName = entry.getName();
-                String newEntryName = null;
-                int index = entryName.indexOf(moduleName);
-                if (index != -1) {
-                    newEntryName = entryName.substring(index + moduleName.length());
-                    while (newEntryName.startsWith("/") || newEntryName.startsWith("\\")) {
-                        newEntryName = newEntryName.substring(1);
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            // Kept for existing launch scripts; modulehub.Cli is the entry point that loads no Swing classes.
+            System.exit(Cli.run(args));
+        }
+        Main module = new Main();
+        module.start();
+    }
+
+    /**
+     * List model for module names that applies bulk updates with a single interval event, instead of
+     * one event per element as {@link DefaultListModel} does.
+     */
+    private static final class ModuleListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> names = new ArrayList<>();
+
+        @Override
+        public int getSize() {
+            return names.size();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return names.get(index);
+        }
+
+        /**
+         * Changes the names to {@code ordered}, which holds the current names in the same relative order,
+         * with one event per run of inserted names.
+         */
+        void insertAll(List<String> ordered) {
+            int runStart = -1;
+            for (int index = 0; index <= ordered.size(); index++) {
+                boolean present = index == ordered.size()
+                        || (index < names.size() && names.get(index).equals(ordered.get(index)));
+                if (present) {
+                    if (runStart != -1) {
+                        fireIntervalAdded(this, runStart, index - 1);
+                        runStart = -1;
                     }
-                }
-                if (newEntryName == null || newEntryName.isEmpty()) {
-                    newEntryName = new File(entryName).getName();
-                }
-                if (newEntryName.isEmpty()) {
-                    zis.closeEntry();
                     continue;
                 }
-                File outFile = new File(destDir, newEntryName);
-                outFile.getParentFile().mkdirs();
-                try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                    int len;
-                    while ((len = zis.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
-                    }
+                names.add(index, ordered.get(index));
+                if (runStart == -1) {
+                    runStart = index;
                 }
-                zis.closeEntry();
             }
         }
-    }
 
-    public static void main(String[] args) {
-        Main module = new Main();
-        module.start();
+        void setAll(List<String> replacement) {
+            int oldSize = names.size();
+            names.clear();
+            names.addAll(replacement);
+            if (oldSize > names.size()) {
+                fireIntervalRemoved(this, names.size(), oldSize - 1);
+            }
+            if (names.size() > oldSize) {
+                fireIntervalAdded(this, oldSize, names.size() - 1);
+            }
+            if (Math.min(oldSize, names.size()) > 0) {
+                fireContentsChanged(this, 0, Math.min(oldSize, names.size()) - 1);
+            }
+        }
     }
 }
@@ -0,0 +1,175 @@
+package modulehub;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed store of release archives. Blobs are named by their SHA-256 and a small ref file
+ * per release (keyed by its zipball URL, which names the repository and tag) points at the blob.
+ * The least recently used blobs are evicted once the store exceeds its size budget. A read-only
+ * store is only ever looked up, so it can be shared between desktops. Blob names are not trusted:
+ * each blob is hashed the first time it is looked up.
+ */
+final class ArchiveStore {
+
+    final File directory;
+    private final long maxBytes;
+    private final boolean readOnly;
+    /** Whether each blob checked since the store was opened matched its name, by digest. */
+    private final Map<String, Boolean> verified = new ConcurrentHashMap<>();
+
+    ArchiveStore(File directory, long maxBytes, boolean readOnly) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Returns the stored archive for a release, or null if it is not in the store or its contents do
+     * not match its digest.
+     */
+    File lookup(String downloadUrl) {
+        File ref = refFile(downloadUrl);
+        if (!ref.isFile()) {
+            return null;
+        }
+        try {
+            String digest = new String(Files.readAllBytes(ref.toPath()), StandardCharsets.UTF_8).trim();
+            if (!digest.matches("[0-9a-f]{64}")) {
+                System.err.println("Ignoring malformed archive ref " + ref);
+                return null;
+            }
+            File blob = blobFile(digest);
+            if (!blob.isFile() || !verify(blob, digest)) {
+                return null;
+            }
+            if (!readOnly) {
+                // The modification time doubles as the LRU clock.
+                blob.setLastModified(System.currentTimeMillis());
+            }
+            return blob;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable archive for " + downloadUrl + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Hashes a blob the first time it is looked up. One that does not match its name, whether damaged
+     * on disk or planted in a shared store, is a miss from then on; a writable store also deletes it
+     * and leaves its refs dangling, as eviction does. A read-only store is left for its owner to fix.
+     */
+    private boolean verify(File blob, String digest) throws IOException {
+        Boolean matches = verified.get(digest);
+        if (matches == null) {
+            matches = sha256(blob).equals(digest);
+            verified.put(digest, matches);
+            if (!matches) {
+                System.err.println("Archive " + blob + " does not match its digest"
+                        + (readOnly ? "; ignoring it" : "; deleting it"));
+                if (!readOnly) {
+                    Files.deleteIfExists(blob.toPath());
+                    verified.remove(digest);
+                }
+            }
+        }
+        return matches;
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) != -1) {
+                // Discard; only the digest matters.
+            }
+        }
+        return ModuleHub.toHex(digest.digest());
+    }
+
+    static String digestOf(File blob) {
+        String name = blob.getName();
+        return name.substring(0, name.length() - ".zip".length());
+    }
+
+    /**
+     * Returns a scratch file inside the store that can later be passed to {@link #add}, or null if
+     * the store is read-only. Keeping it on the same file system makes {@link #add} a rename.
+     */
+    File newTempFile() throws IOException {
+        if (readOnly) {
+            return null;
+        }
+        directory.mkdirs();
+        return File.createTempFile("archive", ".part", directory);
+    }
+
+    /**
+     * Moves {@code archive} into the store under its digest and points the release's ref at it.
+     */
+    void add(String downloadUrl, File archive, String digest) throws IOException {
+        if (readOnly) {
+            return;
+        }
+        File blob = blobFile(digest);
+        blob.getParentFile().mkdirs();
+        if (blob.isFile()) {
+            blob.setLastModified(System.currentTimeMillis());
+        } else {
+            Files.move(archive.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            // The caller hashed these very bytes.
+            verified.put(digest, true);
+        }
+        File ref = refFile(downloadUrl);
+        ref.getParentFile().mkdirs();
+        ModuleHub.writeAtomically(ref, digest.getBytes(StandardCharsets.UTF_8));
+        evict(blob);
+    }
+
+    /**
+     * Deletes the least recently used blobs until the store fits its budget. Refs to evicted blobs
+     * are left in place; {@link #lookup} treats them as misses.
+     */
+    private synchronized void evict(File keep) {
+        File[] blobs = new File(directory, "blobs").listFiles((dir, name) -> name.endsWith(".zip"));
+        if (blobs == null) {
+            return;
+        }
+        long total = 0;
+        for (File blob : blobs) {
+            total += blob.length();
+        }
+        Arrays.sort(blobs, Comparator.comparingLong(File::lastModified));
+        for (File blob : blobs) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long length = blob.length();
+            if (!blob.equals(keep) && blob.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File blobFile(String digest) {
+        return new File(directory, "blobs" + File.separator + digest + ".zip");
+    }
+
+    private File refFile(String downloadUrl) {
+        return new File(directory, "refs" + File.separator + ManifestCache.keyFor(downloadUrl) + ".ref");
+    }
+}
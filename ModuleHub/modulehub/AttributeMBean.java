@@ -0,0 +1,75 @@
+package modulehub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+
+/**
+ * Read-only dynamic MBean whose attributes are backed by suppliers. Used instead of standard
+ * MBeans, which would need a public interface per metric type.
+ */
+final class AttributeMBean implements DynamicMBean {
+
+    private final Map<String, Supplier<Object>> attributes;
+    private final MBeanInfo info;
+
+    AttributeMBean(Map<String, Supplier<Object>> attributes) {
+        this.attributes = attributes;
+        List<MBeanAttributeInfo> infos = new ArrayList<>();
+        for (Map.Entry<String, Supplier<Object>> entry : attributes.entrySet()) {
+            infos.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().get().getClass().getName(),
+                    entry.getKey(), true, false, false));
+        }
+        this.info = new MBeanInfo(AttributeMBean.class.getName(), "Module hub metric",
+                infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<Object> supplier = attributes.get(attribute);
+        if (supplier == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return supplier.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<Object> supplier = attributes.get(name);
+            if (supplier != null) {
+                list.add(new Attribute(name, supplier.get()));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException {
+        throw new MBeanException(new UnsupportedOperationException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+}
@@ -0,0 +1,377 @@
+package modulehub;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Command-line entry point. It runs without the window class, so no Swing or AWT classes are loaded;
+ * {@code Main} forwards its arguments here for compatibility.
+ */
+public final class Cli {
+
+    private static final int MIRROR_PORT = 8787;
+    /** What {@code AbstractModule.getVersion()} returns in the host API this build is compiled against. */
+    private static final String HOST_API_VERSION = "1.0";
+
+    private final ModuleHub hub;
+    private ModuleCatalog catalog = ModuleCatalog.EMPTY;
+    /** Whether to report the start-up time at the first line of output. */
+    private boolean timing;
+    /** Whether a release may be picked for a module that has no compatible one. */
+    private boolean force;
+
+    private Cli(ModuleHub hub) {
+        this.hub = hub;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs a command and returns the process exit code; see {@link #runCommand}.
+     */
+    public static int run(String[] args) {
+        // Never initialise AWT, even indirectly.
+        System.setProperty("java.awt.headless", "true");
+        return new Cli(new ModuleHub(hostVersion(), false)).runCommand(args);
+    }
+
+    /**
+     * Returns the module API version to check releases against: {@code modulehub.hostVersion} if set,
+     * otherwise the version of the host API this build is compiled against.
+     */
+    static String hostVersion() {
+        return System.getProperty("modulehub.hostVersion", HOST_API_VERSION);
+    }
+
+    /**
+     * Runs a headless command and returns the process exit code. Results are printed to stdout as one
+     * JSON object per line; diagnostics go to stderr.
+     * <pre>
+     *   list                      every module with its best compatible release and installed tag
+     *   outdated                  installed modules with a newer compatible release
+     *   install &lt;module&gt;[@tag]    install a release (the best compatible one if no tag is given)
+     *   sync &lt;lockfile&gt;           install every "module[@tag]" line of the lockfile that differs
+     *   rollback &lt;module&gt;         swap a module back to the version its last install replaced
+     *   export &lt;dir&gt; [module[@tag]...]  write a mirror snapshot: manifests, catalog.json, archives
+     *                             (the best compatible release of every module if none are named)
+     *   serve &lt;dir&gt; [port]         serve a snapshot over HTTP for -Dmodulehub.mirror=http://host:port/
+     * </pre>
+     * A trailing {@code --timing} reports the time from JVM start to the first line of output on stderr,
+     * or to the end of the command if it prints nothing. Without a tag, install, sync and export refuse
+     * a module with no compatible release unless {@code --force} is given, which takes its newest.
+     */
+    private int runCommand(String[] args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        timing = arguments.remove("--timing");
+        force = arguments.remove("--force");
+        String command = arguments.isEmpty() ? "" : arguments.remove(0);
+        boolean valid;
+        switch (command) {
+            case "list":
+            case "outdated":
+                valid = arguments.isEmpty();
+                break;
+            case "install":
+            case "sync":
+            case "rollback":
+                valid = arguments.size() == 1;
+                break;
+            case "export":
+                valid = !arguments.isEmpty();
+                break;
+            case "serve":
+                valid = arguments.size() == 1 || (arguments.size() == 2 && arguments.get(1).matches("\\d{1,5}"));
+                break;
+            default:
+                valid = false;
+                break;
+        }
+        if (!valid) {
+            return usage();
+        }
+        try {
+            if (command.equals("serve")) {
+                return MirrorServer.serve(new File(arguments.get(0)),
+                        arguments.size() == 2 ? Integer.parseInt(arguments.get(1)) : MIRROR_PORT);
+            }
+            if (command.equals("rollback")) {
+                return rollbackFromCommandLine(arguments.get(0));
+            }
+            catalog = hub.buildCatalog(false, null);
+            int exitCode;
+            switch (command) {
+                case "list":
+                    exitCode = listModules(false);
+                    break;
+                case "outdated":
+                    exitCode = listModules(true);
+                    break;
+                case "install":
+                    exitCode = installFromCommandLine(Collections.singletonList(arguments.get(0)), false);
+                    break;
+                case "export":
+                    exitCode = exportSnapshot(new File(arguments.get(0)), arguments.subList(1, arguments.size()));
+                    break;
+                default:
+                    exitCode = installFromCommandLine(readLockfile(new File(arguments.get(0))), true);
+                    break;
+            }
+            reportTiming();
+            return exitCode;
+        } catch (Exception ex) {
+            System.err.println("Error: " + ex);
+            return 1;
+        }
+    }
+
+    private int usage() {
+        System.err.println("Usage: Cli [list | outdated | install <module>[@tag] | sync <lockfile>] [--force] [--timing]");
+        System.err.println("       Cli rollback <module>");
+        System.err.println("       Cli export <dir> [module[@tag]...] | serve <dir> [port]");
+        return 2;
+    }
+
+    private int listModules(boolean outdatedOnly) {
+        for (ModuleCatalog.ModuleEntry module : catalog.modules) {
+            ModuleCatalog.Release best = module.bestIndex == -1 ? null : module.releases.get(module.bestIndex);
+            InstalledModules.Record installed = hub.installed(module.name);
+            String installedTag = installed == null ? null : installed.tag;
+            boolean outdated = hub.isOutdated(module);
+            if (outdatedOnly && !outdated) {
+                continue;
+            }
+            JSONObject line = new JSONObject();
+            line.put("module", module.name);
+            line.put("latest", best == null ? JSONObject.NULL : best.tag);
+            line.put("compatible", best != null && best.compatible);
+            line.put("installed", installedTag == null ? JSONObject.NULL : installedTag);
+            line.put("outdated", outdated);
+            emit(line);
+        }
+        return 0;
+    }
+
+    /**
+     * Installs each "module[@tag]" spec in turn. With {@code skipCurrent} set, modules already at the
+     * requested tag are reported as up to date instead of being reinstalled.
+     */
+    private int installFromCommandLine(List<String> specs, boolean skipCurrent) {
+        int exitCode = 0;
+        for (String spec : specs) {
+            int at = spec.lastIndexOf('@');
+            String moduleName = at == -1 ? spec : spec.substring(0, at);
+            String tag = at == -1 ? null : spec.substring(at + 1);
+            JSONObject line = new JSONObject();
+            line.put("module", moduleName);
+            try {
+                ModuleCatalog.Release release = resolveRelease(moduleName, tag);
+                line.put("tag", release.tag);
+                line.put("compatible", release.compatible);
+                File targetDirectory = ModuleHub.getModuleDirectory(moduleName);
+                InstalledModules.Record installed = hub.installed(moduleName);
+                if (skipCurrent && installed != null && release.tag.equals(installed.tag)) {
+                    line.put("status", "up-to-date");
+                } else {
+                    String digest = hub.install(moduleName, release, null);
+                    line.put("digest", digest);
+                    line.put("status", "installed");
+                }
+                line.put("path", targetDirectory.getPath());
+            } catch (Exception ex) {
+                line.put("status", "error");
+                line.put("error", String.valueOf(ex.getMessage()));
+                exitCode = 1;
+            }
+            emit(line);
+        }
+        return exitCode;
+    }
+
+    private int rollbackFromCommandLine(String moduleName) {
+        int exitCode = 0;
+        JSONObject line = new JSONObject();
+        line.put("module", moduleName);
+        try {
+            hub.rollback(moduleName);
+            InstalledModules.Record installed = hub.installed(moduleName);
+            line.put("tag", installed == null ? JSONObject.NULL : installed.tag);
+            line.put("status", "rolled-back");
+            line.put("path", ModuleHub.getModuleDirectory(moduleName).getPath());
+        } catch (Exception ex) {
+            line.put("status", "error");
+            line.put("error", String.valueOf(ex.getMessage()));
+            exitCode = 1;
+        }
+        emit(line);
+        return exitCode;
+    }
+
+    /**
+     * Finds a release of a module, fetching older release pages as needed. A null tag selects the
+     * best compatible release; if there is none, the catalog's fallback is only taken with {@code --force}.
+     */
+    private ModuleCatalog.Release resolveRelease(String moduleName, String tag) throws IOException {
+        ModuleCatalog.ModuleEntry module = catalog.getModule(moduleName);
+        if (module == null) {
+            throw new IOException("Unknown module: " + moduleName);
+        }
+        if (tag == null) {
+            if (module.bestIndex == -1) {
+                throw new IOException("No releases available for " + moduleName);
+            }
+            ModuleCatalog.Release best = module.releases.get(module.bestIndex);
+            if (!best.compatible && !force) {
+                throw new IOException("No release of " + moduleName + " is compatible with module API "
+                        + hub.hostVersion() + "; name a tag or use --force to install " + best.tag);
+            }
+            return best;
+        }
+        while (true) {
+            for (ModuleCatalog.Release release : module.releases) {
+                if (release.tag.equals(tag)) {
+                    return release;
+                }
+            }
+            ModuleCatalog.ModuleEntry extended = module.nextPageUrls.isEmpty() ? module : hub.fetchNextReleasePages(module);
+            if (extended.releases.size() == module.releases.size()) {
+                throw new IOException("Unknown release " + tag + " of " + moduleName);
+            }
+            module = extended;
+        }
+    }
+
+    /**
+     * Writes a self-contained snapshot that other machines can use with -Dmodulehub.mirror:
+     * {@code manifest/<key>.json} holds the manifest bodies under the key of their original URL,
+     * {@code archives/} is an archive store with the selected releases, {@code catalog.json} describes
+     * the resolved catalog and {@code SHA256SUMS} lists the archive digests. Archives already in the
+     * local stores are copied rather than downloaded again. One JSON line is printed per archive.
+     */
+    private int exportSnapshot(File directory, List<String> specs) throws Exception {
+        ArchiveStore snapshotArchives = new ArchiveStore(new File(directory, Mirror.ARCHIVES), Long.MAX_VALUE, false);
+        Map<String, ModuleCatalog.Release> selected = new LinkedHashMap<>();
+        if (specs.isEmpty()) {
+            for (ModuleCatalog.ModuleEntry module : catalog.modules) {
+                ModuleCatalog.Release best = module.bestIndex == -1 ? null : module.releases.get(module.bestIndex);
+                if (best != null && best.compatible && !best.downloadUrl.isEmpty()) {
+                    selected.put(module.name, best);
+                }
+            }
+        } else {
+            for (String spec : specs) {
+                int at = spec.lastIndexOf('@');
+                String moduleName = at == -1 ? spec : spec.substring(0, at);
+                selected.put(moduleName, resolveRelease(moduleName, at == -1 ? null : spec.substring(at + 1)));
+            }
+        }
+
+        int exitCode = 0;
+        Map<String, String> digests = new LinkedHashMap<>();
+        for (Map.Entry<String, ModuleCatalog.Release> entry : selected.entrySet()) {
+            ModuleCatalog.Release release = entry.getValue();
+            JSONObject line = new JSONObject();
+            line.put("module", entry.getKey());
+            line.put("tag", release.tag);
+            try {
+                String digest = hub.exportArchive(release.downloadUrl, snapshotArchives);
+                digests.put(release.downloadUrl, digest);
+                line.put("digest", digest);
+                line.put("status", "exported");
+            } catch (Exception ex) {
+                line.put("status", "error");
+                line.put("error", String.valueOf(ex.getMessage()));
+                exitCode = 1;
+            }
+            emit(line);
+        }
+
+        // Manifest bodies, so the catalog is rebuilt from exactly what this machine saw.
+        Set<String> manifestUrls = new LinkedHashSet<>();
+        manifestUrls.add(hub.manifestUrl());
+        JSONArray modules = new JSONArray();
+        for (ModuleCatalog.ModuleEntry module : catalog.modules) {
+            JSONArray releases = new JSONArray();
+            for (ModuleCatalog.Release release : module.releases) {
+                manifestUrls.add(release.sourceUrl);
+                JSONObject json = new JSONObject();
+                json.put("name", release.name);
+                json.put("tag", release.tag);
+                json.put("compatible", release.compatible);
+                json.put("downloadUrl", release.downloadUrl);
+                json.put("digest", digests.containsKey(release.downloadUrl) ? digests.get(release.downloadUrl) : JSONObject.NULL);
+                releases.put(json);
+            }
+            JSONObject json = new JSONObject();
+            json.put("module", module.name);
+            json.put("releases", releases);
+            modules.put(json);
+        }
+        for (ModuleCatalog.Release release : selected.values()) {
+            manifestUrls.add(release.sourceUrl);
+        }
+        for (String url : manifestUrls) {
+            File target = new File(directory, Mirror.manifestPath(url));
+            target.getParentFile().mkdirs();
+            ModuleHub.writeAtomically(target, hub.fetchManifestContent(url, true, 0).getBytes(StandardCharsets.UTF_8));
+        }
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("created", Instant.now().toString());
+        snapshot.put("manifestUrl", hub.manifestUrl());
+        snapshot.put("modules", modules);
+        ModuleHub.writeAtomically(new File(directory, "catalog.json"), snapshot.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder sums = new StringBuilder();
+        for (String digest : new LinkedHashSet<>(digests.values())) {
+            sums.append(digest).append("  ").append(Mirror.ARCHIVES).append("/blobs/").append(digest).append(".zip\n");
+        }
+        ModuleHub.writeAtomically(new File(directory, "SHA256SUMS"), sums.toString().getBytes(StandardCharsets.UTF_8));
+        return exitCode;
+    }
+
+    /**
+     * Reads "module[@tag]" lines, ignoring blank lines and '#' comments.
+     */
+    private List<String> readLockfile(File lockfile) throws IOException {
+        List<String> specs = new ArrayList<>();
+        for (String line : Files.readAllLines(lockfile.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                specs.add(line);
+            }
+        }
+        return specs;
+    }
+
+    /**
+     * Prints one line of output. With {@code --timing}, the first line also reports the time since
+     * the JVM started on stderr.
+     */
+    private void emit(Object line) {
+        System.out.println(line);
+        reportTiming();
+    }
+
+    private void reportTiming() {
+        if (timing) {
+            timing = false;
+            long now = System.currentTimeMillis();
+            // Not the process start time, which Linux derives from a boot time truncated to the second.
+            long startedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.err.println("Elapsed since JVM start: " + (now - startedAt) + " ms");
+        }
+    }
+}
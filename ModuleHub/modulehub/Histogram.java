@@ -0,0 +1,85 @@
+package modulehub;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records values with all-time count, mean, min, max and power-of-two buckets, plus percentiles
+ * over a window of the most recent samples.
+ */
+final class Histogram {
+
+    private static final int WINDOW = 1024;
+    private static final int BUCKETS = 32;
+
+    private final double[] recent = new double[WINDOW];
+    /** Bucket 0 counts values below 1; bucket i counts values in [2^(i-1), 2^i). */
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private double sum;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    void recordSince(long startedNanos) {
+        record((System.nanoTime() - startedNanos) / 1e6);
+    }
+
+    synchronized void record(double value) {
+        recent[(int) (count % WINDOW)] = value;
+        count++;
+        sum += value;
+        min = count == 1 ? value : Math.min(min, value);
+        max = count == 1 ? value : Math.max(max, value);
+        int bucket = value < 1 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros((long) value));
+        buckets[bucket]++;
+    }
+
+    /**
+     * Returns the given percentile (0-100) of the recent window, or NaN if nothing was recorded.
+     */
+    synchronized double percentile(double percentile) {
+        int size = (int) Math.min(count, WINDOW);
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(recent, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return sorted[Math.max(0, Math.min(size, rank) - 1)];
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+
+    synchronized double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    synchronized double getMin() {
+        return min;
+    }
+
+    synchronized double getMax() {
+        return max;
+    }
+
+    synchronized long[] getBuckets() {
+        return buckets.clone();
+    }
+
+    Map<String, Supplier<Object>> attributes() {
+        Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+        attributes.put("Count", this::getCount);
+        attributes.put("Mean", this::getMean);
+        attributes.put("Min", this::getMin);
+        attributes.put("Max", this::getMax);
+        attributes.put("P50", () -> percentile(50));
+        attributes.put("P90", () -> percentile(90));
+        attributes.put("P99", () -> percentile(99));
+        attributes.put("Buckets", this::getBuckets);
+        return attributes;
+    }
+}
@@ -0,0 +1,260 @@
+package modulehub;
+
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The one HTTP client every request goes through: a shared {@link HttpClient} (HTTP/2 where the server
+ * supports it, pooled connections), gzip decoding for responses that use it, a watchdog that aborts
+ * response bodies which stall, and jittered exponential backoff that honours {@code Retry-After} and
+ * GitHub's rate-limit headers. The client is built on the first request, so commands served from the
+ * manifest cache never start its selector thread.
+ */
+final class HttpTransport {
+
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_MAX_MS = 8000;
+    /** Rate-limit waits longer than this fail fast instead, so cached data can be used. */
+    private static final long MAX_RETRY_WAIT_MS = 60000;
+
+    private final Duration connectTimeout;
+    private volatile HttpClient client;
+    private final Duration requestTimeout;
+    private final long readTimeoutMs;
+    private final int maxAttempts;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    HttpTransport(Duration connectTimeout, Duration requestTimeout, long readTimeoutMs, int maxAttempts) {
+        this.connectTimeout = connectTimeout;
+        this.requestTimeout = requestTimeout;
+        this.readTimeoutMs = readTimeoutMs;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    private HttpClient client() {
+        HttpClient result = client;
+        if (result == null) {
+            synchronized (this) {
+                result = client;
+                if (result == null) {
+                    result = HttpClient.newBuilder()
+                            .version(HttpClient.Version.HTTP_2)
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .connectTimeout(connectTimeout)
+                            .build();
+                    client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(requestTimeout);
+    }
+
+    /**
+     * Sends a request, retrying connection failures, 429/502/503/504 and rate-limited 403 responses.
+     * The request's timeout is a deadline for all attempts together: each retry only gets what is
+     * left of it, and none is made once the backoff would run past it, so a request that timed out
+     * is not retried. The returned response's body must be consumed or closed by the caller.
+     */
+    HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        long deadline = System.nanoTime() + request.timeout().orElse(requestTimeout).toNanos();
+        HttpRequest attemptRequest = request;
+        for (int attempt = 1; ; attempt++) {
+            HttpResponse<InputStream> response;
+            try {
+                response = client().send(attemptRequest, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (IOException e) {
+                long delay = backoff(attempt);
+                if (attempt >= maxAttempts || remainingAfter(deadline, delay) <= 0) {
+                    throw e;
+                }
+                sleep(delay);
+                attemptRequest = withTimeout(request, remainingAfter(deadline, 0));
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+            }
+            long delay = retryDelay(response, attempt);
+            if (delay < 0 || attempt >= maxAttempts) {
+                return response;
+            }
+            if (delay > MAX_RETRY_WAIT_MS) {
+                response.body().close();
+                throw new IOException("Rate limited by " + request.uri().getHost() + " for another "
+                        + delay / 1000 + " s");
+            }
+            if (remainingAfter(deadline, delay) <= 0) {
+                return response;
+            }
+            response.body().close();
+            sleep(delay);
+            attemptRequest = withTimeout(request, remainingAfter(deadline, 0));
+        }
+    }
+
+    /**
+     * Returns the nanoseconds left until {@code deadline} once {@code delayMs} have passed.
+     */
+    private static long remainingAfter(long deadline, long delayMs) {
+        return deadline - System.nanoTime() - delayMs * 1_000_000L;
+    }
+
+    private static HttpRequest withTimeout(HttpRequest request, long timeoutNanos) {
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+                .timeout(Duration.ofNanos(Math.max(1, timeoutNanos)))
+                .build();
+    }
+
+    /**
+     * Returns the response body, gunzipped if needed and guarded by the read timeout.
+     */
+    InputStream openBody(HttpResponse<InputStream> response) throws IOException {
+        InputStream body = new GuardedInputStream(response.body());
+        if ("gzip".equalsIgnoreCase(header(response, "Content-Encoding"))) {
+            try {
+                body = new GZIPInputStream(body, 8192);
+            } catch (IOException e) {
+                body.close();
+                throw e;
+            }
+        }
+        return body;
+    }
+
+    static HttpResponse<InputStream> requireStatus(HttpResponse<InputStream> response, int expected)
+            throws IOException {
+        if (response.statusCode() != expected) {
+            response.body().close();
+            throw new IOException("HTTP " + response.statusCode() + " from " + response.uri());
+        }
+        return response;
+    }
+
+    static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    /**
+     * Returns how long to wait before retrying, or -1 if the response should be returned as is.
+     */
+    private long retryDelay(HttpResponse<?> response, int attempt) {
+        int status = response.statusCode();
+        boolean rateLimited = "0".equals(header(response, "X-RateLimit-Remaining"));
+        if (status != 429 && status != 502 && status != 503 && status != 504 && !(status == 403 && rateLimited)) {
+            return -1;
+        }
+        String retryAfter = header(response, "Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                try {
+                    return Math.max(0, ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME)
+                            .toInstant().toEpochMilli() - System.currentTimeMillis());
+                } catch (DateTimeParseException ignored) {
+                    // Fall through to the other hints.
+                }
+            }
+        }
+        String reset = header(response, "X-RateLimit-Reset");
+        if (rateLimited && reset != null) {
+            try {
+                return Math.max(0, Long.parseLong(reset.trim()) * 1000 - System.currentTimeMillis());
+            } catch (NumberFormatException ignored) {
+                // Fall back to exponential backoff.
+            }
+        }
+        return backoff(attempt);
+    }
+
+    /**
+     * Exponential backoff with full jitter.
+     */
+    private static long backoff(int attempt) {
+        long ceiling = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    /**
+     * Closes the wrapped body from the watchdog once it has gone {@code readTimeoutMs} without data,
+     * which unblocks the reader with an exception.
+     */
+    private final class GuardedInputStream extends FilterInputStream {
+
+        private volatile long lastActivity = System.nanoTime();
+        private volatile boolean stalled;
+        private final ScheduledFuture<?> check;
+
+        GuardedInputStream(InputStream in) {
+            super(in);
+            long period = Math.max(100, readTimeoutMs / 4);
+            check = watchdog.scheduleWithFixedDelay(() -> {
+                if (System.nanoTime() - lastActivity > readTimeoutMs * 1_000_000L) {
+                    stalled = true;
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                        // The reader sees the failure.
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            try {
+                int bytesRead = super.read(buffer, offset, length);
+                lastActivity = System.nanoTime();
+                return bytesRead;
+            } catch (IOException e) {
+                if (stalled) {
+                    throw new SocketTimeoutException("No data received for " + readTimeoutMs + " ms");
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            check.cancel(false);
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package modulehub;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A queued install of one module release. Progress fields are written by the worker thread and
+ * read by the EDT when the job list repaints.
+ */
+public final class InstallJob implements Comparable<InstallJob> {
+
+    enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    public interface Task {
+        void run(InstallJob job) throws Exception;
+    }
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    final String moduleName;
+    final String tag;
+    final int priority;
+    private final long sequence = SEQUENCE.getAndIncrement();
+    final Task task;
+    final AtomicLong bytesTransferred = new AtomicLong();
+    volatile long totalBytes = -1;
+    volatile State state = State.QUEUED;
+    volatile String status = "Queued";
+    /** When the job completed successfully, in {@link System#nanoTime} terms. */
+    volatile long doneAt;
+    volatile Thread worker;
+    volatile TokenBucket bandwidth;
+    public volatile Consumer<Exception> onFailure;
+
+    public InstallJob(String moduleName, String tag, int priority, Task task) {
+        this.moduleName = moduleName;
+        this.tag = tag;
+        this.priority = priority;
+        this.task = task;
+    }
+
+    /**
+     * Returns how long ago the job completed successfully in milliseconds, or -1 if it has not.
+     */
+    public long millisSinceDone() {
+        return state == State.DONE ? (System.nanoTime() - doneAt) / 1_000_000 : -1;
+    }
+
+    /**
+     * Returns true once the job has stopped, whether it completed, failed or was cancelled.
+     */
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    public static void setStatus(InstallJob job, String status) {
+        if (job != null) {
+            job.status = status;
+        }
+    }
+
+    /**
+     * Wraps a download stream so it counts bytes for this job, respects the shared bandwidth cap
+     * and stops once the job is cancelled. Returns {@code in} unchanged when there is no job.
+     */
+    static InputStream monitor(InstallJob job, InputStream in) {
+        if (job == null) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (job.state == State.CANCELLED) {
+                    throw new InterruptedIOException("Install cancelled");
+                }
+                int bytesRead = super.read(buffer, offset, length);
+                if (bytesRead > 0) {
+                    job.bytesTransferred.addAndGet(bytesRead);
+                    if (job.bandwidth != null) {
+                        job.bandwidth.acquire(bytesRead);
+                    }
+                }
+                return bytesRead;
+            }
+        };
+    }
+
+    @Override
+    public int compareTo(InstallJob other) {
+        int byPriority = Integer.compare(priority, other.priority);
+        return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public String toString() {
+        String progress;
+        long transferred = bytesTransferred.get();
+        if (state != State.RUNNING) {
+            progress = "";
+        } else if (totalBytes > 0) {
+            progress = String.format(" %d%% of %.1f MB", transferred * 100 / totalBytes, totalBytes / 1048576.0);
+        } else {
+            progress = String.format(" %.1f MB", transferred / 1048576.0);
+        }
+        return moduleName + " (" + tag + ") - " + status + progress;
+    }
+}
@@ -0,0 +1,82 @@
+package modulehub;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-install record of every extracted file's path, size and CRC32, taken from the archive.
+ * Lets the next install of the same module skip unchanged files and remove dropped ones.
+ */
+final class InstallManifest {
+
+    private final Map<String, long[]> files = new LinkedHashMap<>();
+
+    /**
+     * Returns the combined size of all files in the manifest.
+     */
+    long totalSize() {
+        long total = 0;
+        for (long[] sizeAndCrc : files.values()) {
+            total += sizeAndCrc[0];
+        }
+        return total;
+    }
+
+    static InstallManifest load(File manifestFile) {
+        InstallManifest manifest = new InstallManifest();
+        if (!manifestFile.isFile()) {
+            return manifest;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Format: size TAB crc TAB path
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3) {
+                    manifest.put(fields[2], Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // An unreadable manifest only means every file gets rewritten.
+            System.err.println("Ignoring install manifest " + manifestFile + ": " + e.getMessage());
+            return new InstallManifest();
+        }
+        return manifest;
+    }
+
+    void put(String relativePath, long size, long crc) {
+        files.put(relativePath, new long[] {size, crc});
+    }
+
+    boolean contains(String relativePath) {
+        return files.containsKey(relativePath);
+    }
+
+    Set<String> paths() {
+        return files.keySet();
+    }
+
+    /**
+     * Returns true if the file was recorded with the same size and CRC and is still on disk at that size.
+     */
+    boolean isUnchanged(String relativePath, Path target, long size, long crc) {
+        long[] recorded = files.get(relativePath);
+        File file = target.toFile();
+        return recorded != null && size != -1 && recorded[0] == size && recorded[1] == crc
+                && file.isFile() && file.length() == size;
+    }
+
+    void save(File manifestFile) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, long[]> file : files.entrySet()) {
+            content.append(file.getValue()[0]).append('\t').append(file.getValue()[1]).append('\t')
+                    .append(file.getKey()).append('\n');
+        }
+        ModuleHub.writeAtomically(manifestFile, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
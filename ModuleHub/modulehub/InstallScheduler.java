@@ -0,0 +1,118 @@
+package modulehub;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs install jobs from a priority queue on a fixed number of workers. Only one job per module
+ * may be queued or running at a time; all jobs share one bandwidth limit.
+ */
+final class InstallScheduler {
+
+    private final ThreadPoolExecutor executor;
+    private final TokenBucket bandwidth;
+    private final Map<String, InstallJob> activeJobs = new HashMap<>();
+
+    InstallScheduler(int parallelism, TokenBucket bandwidth) {
+        this.bandwidth = bandwidth;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "install-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues a job. Returns the job already active for the same module instead, if there is one.
+     */
+    synchronized InstallJob submit(InstallJob job) {
+        InstallJob active = activeJobs.get(job.moduleName);
+        if (active != null) {
+            return active;
+        }
+        activeJobs.put(job.moduleName, job);
+        job.bandwidth = bandwidth;
+        executor.execute(new QueuedJob(job));
+        return job;
+    }
+
+    /**
+     * Cancels a job. The module stays claimed until the job's worker has stopped, since a running
+     * install may still be writing its staging directory.
+     */
+    synchronized void cancel(InstallJob job) {
+        if (job.state != InstallJob.State.QUEUED && job.state != InstallJob.State.RUNNING) {
+            return;
+        }
+        job.state = InstallJob.State.CANCELLED;
+        job.status = "Cancelled";
+        // The worker is only cleared under this lock, so it is still running this job.
+        if (job.worker != null) {
+            job.worker.interrupt();
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(InstallJob job) {
+        synchronized (this) {
+            if (job.state == InstallJob.State.CANCELLED) {
+                activeJobs.remove(job.moduleName, job);
+                return;
+            }
+            job.state = InstallJob.State.RUNNING;
+            job.status = "Starting";
+            job.worker = Thread.currentThread();
+        }
+        try {
+            job.task.run(job);
+            job.status = "Done";
+            job.doneAt = System.nanoTime();
+            job.state = InstallJob.State.DONE;
+        } catch (Exception ex) {
+            if (job.state != InstallJob.State.CANCELLED) {
+                ex.printStackTrace();
+                job.status = "Failed: " + ex.getMessage();
+                job.state = InstallJob.State.FAILED;
+                if (job.onFailure != null) {
+                    job.onFailure.accept(ex);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                job.worker = null;
+                activeJobs.remove(job.moduleName, job);
+            }
+            // No cancel can interrupt this thread any more; clear one that arrived before the
+            // task noticed, so it does not leak into the next job.
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Queue element ordered by its job's priority.
+     */
+    private final class QueuedJob implements Runnable, Comparable<QueuedJob> {
+        private final InstallJob job;
+
+        QueuedJob(InstallJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            InstallScheduler.this.run(job);
+        }
+
+        @Override
+        public int compareTo(QueuedJob other) {
+            return job.compareTo(other.job);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package modulehub;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Phase timings and sizes of one install, collected by {@link ModuleHub#installRelease} as it goes.
+ */
+final class InstallTrace {
+    final String moduleName;
+    final String downloadUrl;
+    final long started = System.nanoTime();
+    /** Duration of each phase in milliseconds, in the order the phases ran. */
+    final Map<String, Double> phasesMs = new LinkedHashMap<>();
+    /**
+     * Where the archive came from: archive-store, shared-archive-store, mirror, prefetch, stream,
+     * download, mirror-stream or mirror-download.
+     */
+    String source;
+    long downloadedBytes = -1;
+    String digest;
+    Exception error;
+    private long phaseStarted = started;
+
+    InstallTrace(String moduleName, String downloadUrl) {
+        this.moduleName = moduleName;
+        this.downloadUrl = downloadUrl;
+    }
+
+    /**
+     * Ends the phase that started when the previous one ended.
+     */
+    void endPhase(String name) {
+        long now = System.nanoTime();
+        phasesMs.put(name, (now - phaseStarted) / 1e6);
+        phaseStarted = now;
+    }
+}
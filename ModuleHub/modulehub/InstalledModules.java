@@ -0,0 +1,135 @@
+package modulehub;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of installed modules, one line per module in a properties file:
+ * {@code name=tag<TAB>sha256<TAB>fileCount<TAB>installedAtMillis}. It is read in one go at startup,
+ * so nothing has to walk the module directories, and rewritten atomically after every install.
+ * Lines holding only a tag, as written by earlier versions, are still understood. The record a module
+ * had before its last install is kept under {@code previous/name} for rollbacks.
+ */
+public final class InstalledModules {
+
+    public static final class Record {
+        public final String tag;
+        /** Parsed once, so outdated checks don't re-parse the tag. */
+        final int[] version;
+        /** SHA-256 of the installed archive, or null if unknown. */
+        final String digest;
+        /** Number of files installed, or -1 if unknown. */
+        final int fileCount;
+        /** Install time in epoch milliseconds, or 0 if unknown. */
+        final long installedAt;
+
+        Record(String tag, String digest, int fileCount, long installedAt) {
+            this.tag = tag;
+            this.version = ModuleCatalog.parseVersion(tag);
+            this.digest = digest;
+            this.fileCount = fileCount;
+            this.installedAt = installedAt;
+        }
+
+        static Record parse(String value) {
+            String[] fields = value.split("\t", -1);
+            try {
+                if (fields.length == 4) {
+                    return new Record(fields[0], fields[1].isEmpty() ? null : fields[1],
+                            Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+                }
+            } catch (NumberFormatException e) {
+                // Treat the whole value as a tag.
+            }
+            return new Record(value, null, -1, 0);
+        }
+
+        String format() {
+            return tag + "\t" + (digest == null ? "" : digest) + "\t" + fileCount + "\t" + installedAt;
+        }
+    }
+
+    private final File file;
+    /** Read from the EDT for every badge, written by install workers. */
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    /** Module names are directory names, so they never contain the separator of this prefix. */
+    private static final String PREVIOUS_PREFIX = "previous/";
+    private final Map<String, Record> previousRecords = new ConcurrentHashMap<>();
+
+    InstalledModules(File file) {
+        this.file = file;
+        if (file.isFile()) {
+            Properties properties = new Properties();
+            try {
+                properties.load(new ByteArrayInputStream(Files.readAllBytes(file.toPath())));
+            } catch (IOException e) {
+                System.err.println("Ignoring installed module list " + file + ": " + e.getMessage());
+            }
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(PREVIOUS_PREFIX)) {
+                    previousRecords.put(name.substring(PREVIOUS_PREFIX.length()), Record.parse(properties.getProperty(name)));
+                } else {
+                    records.put(name, Record.parse(properties.getProperty(name)));
+                }
+            }
+        }
+    }
+
+    Record get(String moduleName) {
+        return records.get(moduleName);
+    }
+
+    Set<String> names() {
+        return records.keySet();
+    }
+
+    Record getPrevious(String moduleName) {
+        return previousRecords.get(moduleName);
+    }
+
+    synchronized void put(String moduleName, String tag, String digest, int fileCount) throws IOException {
+        Record replaced = records.put(moduleName, new Record(tag, digest, fileCount, System.currentTimeMillis()));
+        setPrevious(moduleName, replaced);
+        save();
+    }
+
+    /**
+     * Exchanges a module's record with its previous one; a module without a previous record is
+     * no longer listed as installed.
+     */
+    synchronized void rollback(String moduleName) throws IOException {
+        Record current = records.remove(moduleName);
+        Record previous = previousRecords.get(moduleName);
+        if (previous != null) {
+            records.put(moduleName, previous);
+        }
+        setPrevious(moduleName, current);
+        save();
+    }
+
+    private void setPrevious(String moduleName, Record record) {
+        if (record == null) {
+            previousRecords.remove(moduleName);
+        } else {
+            previousRecords.put(moduleName, record);
+        }
+    }
+
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Record> entry : records.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().format());
+        }
+        for (Map.Entry<String, Record> entry : previousRecords.entrySet()) {
+            properties.setProperty(PREVIOUS_PREFIX + entry.getKey(), entry.getValue().format());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store(out, null);
+        file.getParentFile().mkdirs();
+        ModuleHub.writeAtomically(file, out.toByteArray());
+    }
+}
@@ -0,0 +1,233 @@
+package modulehub;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+
+/**
+ * On-disk cache of manifest responses. Each URL maps to a body file and a properties file holding
+ * its validators ({@code ETag}, {@code Last-Modified}) and the time it was last confirmed current.
+ * A URL may also have a derived file, something computed from its body that is cheaper to load than
+ * the body itself, stamped with the body it was computed from.
+ */
+final class ManifestCache {
+
+    static final class Entry {
+        final String body;
+        final String etag;
+        final String lastModified;
+        final long fetchedAt;
+
+        Entry(String body, String etag, String lastModified, long fetchedAt) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final File directory;
+    private final long ttlMs;
+    private final long maxBytes;
+    private final boolean offline;
+
+    ManifestCache(File directory, long ttlMs, long maxBytes, boolean offline) {
+        this.directory = directory;
+        this.ttlMs = ttlMs;
+        this.maxBytes = maxBytes;
+        this.offline = offline;
+    }
+
+    boolean isOffline() {
+        return offline;
+    }
+
+    boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.fetchedAt < ttlMs;
+    }
+
+    /**
+     * Returns true if the URL has an entry that was confirmed current within the TTL. Only its
+     * metadata is read.
+     */
+    boolean isFresh(String url) {
+        Properties meta = readMeta(url);
+        try {
+            return meta != null
+                    && System.currentTimeMillis() - Long.parseLong(meta.getProperty("fetchedAt", "0")) < ttlMs;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    Entry get(String url) {
+        Properties meta = readMeta(url);
+        if (meta == null) {
+            return null;
+        }
+        File bodyFile = new File(directory, keyFor(url) + ".body");
+        try {
+            String body = new String(Files.readAllBytes(bodyFile.toPath()), StandardCharsets.UTF_8);
+            return new Entry(body, meta.getProperty("etag"), meta.getProperty("lastModified"),
+                    Long.parseLong(meta.getProperty("fetchedAt", "0")));
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable cache entry for " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the metadata of the URL's entry, or null if it has no complete entry.
+     */
+    private Properties readMeta(String url) {
+        return readMeta(url, keyFor(url));
+    }
+
+    private Properties readMeta(String url, String key) {
+        File metaFile = new File(directory, key + ".properties");
+        if (!metaFile.isFile() || !new File(directory, key + ".body").isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(metaFile)) {
+            Properties meta = new Properties();
+            meta.load(in);
+            return url.equals(meta.getProperty("url")) ? meta : null;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable cache entry for " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns what {@link #putDerived} stored for the URL under {@code kind}, if it was computed from
+     * the cached body and that body would be served as is: confirmed current within the TTL, or of any
+     * age with {@code anyAge} or offline mode set. The body itself is not read.
+     */
+    String getDerived(String url, String kind, boolean anyAge) {
+        String key = keyFor(url);
+        Properties meta = readMeta(url, key);
+        if (meta == null || meta.getProperty("bodyStamp") == null) {
+            return null;
+        }
+        try {
+            if (!anyAge && !offline
+                    && System.currentTimeMillis() - Long.parseLong(meta.getProperty("fetchedAt", "0")) >= ttlMs) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        try {
+            String derived = new String(Files.readAllBytes(new File(directory, key + ".derived").toPath()),
+                    StandardCharsets.UTF_8);
+            String stamp = kind + ' ' + meta.getProperty("bodyStamp") + '\n';
+            return derived.startsWith(stamp) ? derived.substring(stamp.length()) : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable derived cache entry for " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores {@code derived}, computed from {@code body}, for the URL. It is only returned while
+     * {@code body} is the cached body. Failures only cost the next caller a recomputation, so they are
+     * reported and otherwise ignored.
+     */
+    void putDerived(String url, String kind, String body, String derived) {
+        try {
+            directory.mkdirs();
+            ModuleHub.writeAtomically(new File(directory, keyFor(url) + ".derived"),
+                    (kind + ' ' + stampFor(body) + '\n' + derived).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Could not cache derived entry for " + url + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Identifies a body by its length and hash, which is far cheaper than a digest and good enough to
+     * tell the versions of one URL apart.
+     */
+    private static String stampFor(String body) {
+        return body.length() + "-" + Integer.toHexString(body.hashCode());
+    }
+
+    void put(String url, String body, String etag, String lastModified) throws IOException {
+        String key = keyFor(url);
+        directory.mkdirs();
+        ModuleHub.writeAtomically(new File(directory, key + ".body"), body.getBytes(StandardCharsets.UTF_8));
+        writeMeta(key, url, stampFor(body), etag, lastModified);
+        trim();
+    }
+
+    /**
+     * Marks an entry as current again after a 304 response. The body's modification time is bumped
+     * too, since that is what {@link #trim} evicts by.
+     */
+    void touch(String url, Entry entry) throws IOException {
+        String key = keyFor(url);
+        writeMeta(key, url, stampFor(entry.body), entry.etag, entry.lastModified);
+        new File(directory, key + ".body").setLastModified(System.currentTimeMillis());
+    }
+
+    private void writeMeta(String key, String url, String bodyStamp, String etag, String lastModified)
+            throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        meta.setProperty("bodyStamp", bodyStamp);
+        meta.setProperty("fetchedAt", Long.toString(System.currentTimeMillis()));
+        if (etag != null) {
+            meta.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            meta.setProperty("lastModified", lastModified);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        meta.store(out, null);
+        ModuleHub.writeAtomically(new File(directory, key + ".properties"), out.toByteArray());
+    }
+
+    /**
+     * Evicts the oldest downloaded bodies until the cache fits in {@code maxBytes}.
+     */
+    private synchronized void trim() {
+        File[] bodies = directory.listFiles((dir, name) -> name.endsWith(".body"));
+        if (bodies == null) {
+            return;
+        }
+        long total = 0;
+        for (File body : bodies) {
+            total += body.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(bodies, Comparator.comparingLong(File::lastModified));
+        for (File body : bodies) {
+            if (total <= maxBytes) {
+                break;
+            }
+            total -= body.length();
+            String key = body.getName().substring(0, body.getName().length() - ".body".length());
+            body.delete();
+            new File(directory, key + ".properties").delete();
+            new File(directory, key + ".derived").delete();
+        }
+    }
+
+    static String keyFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ModuleHub.toHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
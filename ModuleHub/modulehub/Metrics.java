@@ -0,0 +1,144 @@
+package modulehub;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms for manifest loading and installs, exported as JMX MBeans under the
+ * "modulehub" domain once {@link #registerWithJmx} has been called:
+ * {@code modulehub:type=Histogram,name=...}, {@code modulehub:type=Counter,name=...} and one
+ * {@code modulehub:type=Repository,name=...} per manifest URL path.
+ */
+final class Metrics {
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Map<String, Repository> repositories = new ConcurrentHashMap<>();
+    private final Set<ObjectName> registered = new HashSet<>();
+    private volatile MBeanServer server;
+    private boolean closed;
+
+    Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> {
+            Histogram histogram = new Histogram();
+            register("Histogram", n, histogram.attributes());
+            return histogram;
+        });
+    }
+
+    void count(String name) {
+        counters.computeIfAbsent(name, n -> {
+            AtomicLong counter = new AtomicLong();
+            register("Counter", n, Collections.singletonMap("Count", counter::get));
+            return counter;
+        }).incrementAndGet();
+    }
+
+    /**
+     * Returns the stats of the repository a manifest URL belongs to, keyed by its path.
+     */
+    Repository repository(String url) {
+        return repositories.computeIfAbsent(URI.create(url).getPath(), path -> {
+            Repository repository = new Repository();
+            register("Repository", path, repository.attributes());
+            return repository;
+        });
+    }
+
+    synchronized void registerWithJmx() {
+        if (closed) {
+            return;
+        }
+        server = ManagementFactory.getPlatformMBeanServer();
+        histograms.forEach((name, histogram) -> register("Histogram", name, histogram.attributes()));
+        counters.forEach((name, counter) -> register("Counter", name, Collections.singletonMap("Count", counter::get)));
+        repositories.forEach((path, repository) -> register("Repository", path, repository.attributes()));
+    }
+
+    /**
+     * Removes every MBean this instance registered, so a closed module leaves nothing behind in the
+     * JVM it shared with the host. Metrics keep being recorded, just no longer exposed.
+     */
+    synchronized void unregisterFromJmx() {
+        closed = true;
+        MBeanServer mbeanServer = server;
+        server = null;
+        if (mbeanServer == null) {
+            return;
+        }
+        for (ObjectName objectName : registered) {
+            try {
+                mbeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already unregistered, e.g. replaced by a newer instance of the module.
+            }
+        }
+        registered.clear();
+    }
+
+    private synchronized void register(String type, String name, Map<String, Supplier<Object>> attributes) {
+        MBeanServer mbeanServer = server;
+        if (mbeanServer == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName("modulehub:type=" + type + ",name=" + ObjectName.quote(name));
+            if (mbeanServer.isRegistered(objectName)) {
+                // Left over from a previous instance of the module in the same JVM.
+                mbeanServer.unregisterMBean(objectName);
+            }
+            mbeanServer.registerMBean(new AttributeMBean(attributes), objectName);
+            registered.add(objectName);
+        } catch (JMException e) {
+            System.err.println("Could not register metric " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Latency, size and status of the fetches of one repository manifest.
+     */
+    static final class Repository {
+        final Histogram latencyMs = new Histogram();
+        final AtomicLong fetches = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        volatile int lastStatus = -1;
+        volatile long lastBytes;
+
+        void record(int status, long bodyBytes, long startedNanos) {
+            latencyMs.recordSince(startedNanos);
+            fetches.incrementAndGet();
+            bytes.addAndGet(bodyBytes);
+            lastStatus = status;
+            lastBytes = bodyBytes;
+        }
+
+        void recordFailure(int status, long startedNanos) {
+            latencyMs.recordSince(startedNanos);
+            fetches.incrementAndGet();
+            failures.incrementAndGet();
+            lastStatus = status;
+        }
+
+        Map<String, Supplier<Object>> attributes() {
+            Map<String, Supplier<Object>> attributes = new LinkedHashMap<>(latencyMs.attributes());
+            attributes.put("Fetches", fetches::get);
+            attributes.put("Failures", failures::get);
+            attributes.put("TotalBytes", bytes::get);
+            attributes.put("LastStatus", () -> lastStatus);
+            attributes.put("LastBytes", () -> lastBytes);
+            return attributes;
+        }
+    }
+}
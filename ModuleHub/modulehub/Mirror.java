@@ -0,0 +1,86 @@
+package modulehub;
+
+import java.io.*;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A snapshot written by {@code Cli export}, read either from a directory (a local disk or network
+ * share) or from another machine running {@code Cli serve}. Manifests are looked up by the key of
+ * their original URL and archives through the snapshot's archive store layout, so the catalog and
+ * install code see the same URLs as without a mirror. Anything missing from the mirror falls back
+ * to the internet.
+ */
+final class Mirror {
+
+    static final String MANIFESTS = "manifest";
+    static final String ARCHIVES = "archives";
+
+    private final File directory;
+    private final ArchiveStore archives;
+    private final String baseUrl;
+    private final HttpTransport transport;
+
+    private Mirror(File directory, String baseUrl, HttpTransport transport) {
+        this.directory = directory;
+        this.archives = directory == null ? null : new ArchiveStore(new File(directory, ARCHIVES), 0, true);
+        this.baseUrl = baseUrl;
+        this.transport = transport;
+    }
+
+    static Mirror of(String location, HttpTransport transport) {
+        if (location.startsWith("http://") || location.startsWith("https://")) {
+            return new Mirror(null, location.endsWith("/") ? location : location + "/", transport);
+        }
+        return new Mirror(new File(location), null, transport);
+    }
+
+    static String manifestPath(String url) {
+        return MANIFESTS + "/" + ManifestCache.keyFor(url) + ".json";
+    }
+
+    /**
+     * Returns the mirrored body of a manifest URL, or null if the mirror does not have it.
+     */
+    String readManifest(String url) throws IOException {
+        return read(manifestPath(url));
+    }
+
+    /**
+     * Returns the archive of a release from a directory mirror, or null.
+     */
+    File localArchive(String downloadUrl) {
+        return archives == null ? null : archives.lookup(downloadUrl);
+    }
+
+    /**
+     * Returns the digest an HTTP mirror holds for a release, or null if it has none.
+     */
+    String remoteArchiveDigest(String downloadUrl) throws IOException {
+        if (baseUrl == null) {
+            return null;
+        }
+        String digest = read(ARCHIVES + "/refs/" + ManifestCache.keyFor(downloadUrl) + ".ref");
+        return digest == null ? null : digest.trim();
+    }
+
+    String remoteArchiveUrl(String digest) {
+        return baseUrl + ARCHIVES + "/blobs/" + digest + ".zip";
+    }
+
+    private String read(String relativePath) throws IOException {
+        if (directory != null) {
+            File file = new File(directory, relativePath);
+            return file.isFile() ? new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8) : null;
+        }
+        HttpResponse<InputStream> response = transport.send(transport.request(baseUrl + relativePath).build());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            return null;
+        }
+        try (InputStream in = transport.openBody(HttpTransport.requireStatus(response, ModuleHub.HTTP_OK))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package modulehub;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+/**
+ * Minimal static file server for a snapshot directory, with HEAD and single byte-range support so
+ * segmented downloads work against it. Blobs are content-addressed and never change, so their
+ * digest doubles as a strong ETag.
+ */
+final class MirrorServer {
+
+    private static final int THREADS = 16;
+
+    static int serve(File root, int port) throws IOException, InterruptedException {
+        Path rootPath = root.toPath().toAbsolutePath().normalize();
+        if (!Files.isDirectory(rootPath)) {
+            throw new IOException("Not a snapshot directory: " + root);
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", exchange -> {
+            try {
+                handle(rootPath, exchange);
+            } catch (IOException e) {
+                System.err.println("Error serving " + exchange.getRequestURI() + ": " + e.getMessage());
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(THREADS, runnable -> new Thread(runnable, "mirror-server")));
+        server.start();
+        JSONObject line = new JSONObject();
+        line.put("status", "serving");
+        line.put("directory", rootPath.toString());
+        line.put("port", server.getAddress().getPort());
+        System.out.println(line);
+        // Serve until the process is killed.
+        Thread.currentThread().join();
+        return 0;
+    }
+
+    private static void handle(Path root, HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+        }
+        Path file = root.resolve(exchange.getRequestURI().getPath().substring(1)).normalize();
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        int status = ModuleHub.HTTP_OK;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.matches("bytes=\\d+-\\d*")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            start = Long.parseLong(bounds[0]);
+            end = bounds[1].isEmpty() ? length - 1 : Math.min(Long.parseLong(bounds[1]), length - 1);
+            if (start > end) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes */" + length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            status = ModuleHub.HTTP_PARTIAL;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + length);
+        }
+        String name = file.getFileName().toString();
+        if (name.endsWith(".zip")) {
+            exchange.getResponseHeaders().add("ETag", "\"" + name.substring(0, name.length() - 4) + "\"");
+            exchange.getResponseHeaders().add("Content-Type", "application/zip");
+        }
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        long count = end - start + 1;
+        if (method.equals("HEAD")) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(count));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, count);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             OutputStream body = exchange.getResponseBody()) {
+            WritableByteChannel target = Channels.newChannel(body);
+            for (long position = start; position <= end; ) {
+                position += channel.transferTo(position, end + 1 - position, target);
+            }
+        }
+    }
+}
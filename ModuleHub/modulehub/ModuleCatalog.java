@@ -0,0 +1,262 @@
+package modulehub;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable, indexed view of every module and release in the manifest. Built once per manifest
+ * load so that selection and rendering are plain lookups rather than JSON walks.
+ */
+public final class ModuleCatalog {
+
+    public static final ModuleCatalog EMPTY = new Builder().build();
+
+    public static final class Release {
+        public final String name;
+        public final String tag;
+        public final String displayName;
+        public final boolean compatible;
+        final int[] version;
+        public final String downloadUrl;
+        public final String htmlUrl;
+        /** The release page this release was read from, used to reload an evicted body. */
+        public final String sourceUrl;
+        /** Release notes; softly referenced so the GC can evict them under memory pressure. */
+        private volatile SoftReference<String> body;
+
+        Release(String name, String tag, boolean compatible, String downloadUrl, String htmlUrl, String body,
+                String sourceUrl) {
+            this.name = name;
+            this.tag = tag;
+            this.compatible = compatible;
+            this.version = parseVersion(tag);
+            this.downloadUrl = downloadUrl;
+            this.htmlUrl = htmlUrl;
+            this.sourceUrl = sourceUrl;
+            this.body = new SoftReference<>(body);
+            // Build a combined display string.
+            String displayName = name + " (" + tag + ")";
+            this.displayName = compatible ? displayName : displayName + " (incompatible)";
+        }
+
+        /**
+         * Returns the release notes, or null if they have been evicted.
+         */
+        public String getBody() {
+            return body.get();
+        }
+
+        public void setBody(String body) {
+            this.body = new SoftReference<>(body);
+        }
+    }
+
+    public static final class ModuleEntry {
+        public final String name;
+        public final List<Release> releases;
+        /** Index of the highest compatible release, or 0 if none is compatible, or -1 if there are no releases. */
+        public final int bestIndex;
+        /** URLs of the next unloaded release page of each repository that has more. */
+        public final List<String> nextPageUrls;
+
+        ModuleEntry(String name, List<Release> releases, List<String> nextPageUrls) {
+            this.name = name;
+            this.releases = Collections.unmodifiableList(new ArrayList<>(releases));
+            this.bestIndex = findBestIndex(this.releases);
+            this.nextPageUrls = Collections.unmodifiableList(new ArrayList<>(nextPageUrls));
+        }
+
+        /**
+         * Returns a copy with {@code more} appended (skipping tags already present) and the given
+         * next page URLs.
+         */
+        ModuleEntry withReleases(List<Release> more, List<String> nextPageUrls) {
+            List<Release> combined = new ArrayList<>(releases);
+            Set<String> tags = new HashSet<>();
+            for (Release release : releases) {
+                tags.add(release.tag);
+            }
+            for (Release release : more) {
+                if (tags.add(release.tag)) {
+                    combined.add(release);
+                }
+            }
+            return new ModuleEntry(name, combined, nextPageUrls);
+        }
+
+        int countNewReleases(List<Release> page) {
+            Set<String> tags = new HashSet<>();
+            for (Release release : releases) {
+                tags.add(release.tag);
+            }
+            int count = 0;
+            for (Release release : page) {
+                if (!tags.contains(release.tag)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static int findBestIndex(List<Release> releases) {
+            int bestIndex = -1;
+            for (int i = 0; i < releases.size(); i++) {
+                Release release = releases.get(i);
+                if (release.compatible
+                        && (bestIndex == -1 || compareVersions(release.version, releases.get(bestIndex).version) > 0)) {
+                    bestIndex = i;
+                }
+            }
+            // If no compatible version was found, default to the first version.
+            if (bestIndex == -1 && !releases.isEmpty()) {
+                bestIndex = 0;
+            }
+            return bestIndex;
+        }
+    }
+
+    /**
+     * Collects per-repository entries, merging repositories that map to the same module name.
+     * Entries may be added in any order; modules and the releases merged into them are ordered by
+     * the position of their repositories in the manifest index.
+     */
+    public static final class Builder {
+        /** Entries of each module by repository position. */
+        private final Map<String, SortedMap<Integer, ModuleEntry>> partsByModule = new HashMap<>();
+        /** Entries from the last build, reused while their module is unchanged. */
+        private final Map<String, ModuleEntry> builtByModule = new HashMap<>();
+
+        public void add(ModuleEntry entry, int position) {
+            if (entry.releases.isEmpty()) {
+                return;
+            }
+            partsByModule.computeIfAbsent(entry.name, name -> new TreeMap<>()).put(position, entry);
+            builtByModule.remove(entry.name);
+        }
+
+        /**
+         * Replaces everything collected for a module with {@code entry}, e.g. once older release pages
+         * have been merged into it. Does nothing for a module that has not been added.
+         */
+        public void replace(ModuleEntry entry) {
+            SortedMap<Integer, ModuleEntry> parts = partsByModule.get(entry.name);
+            if (parts != null) {
+                int position = parts.firstKey();
+                parts.clear();
+                parts.put(position, entry);
+                builtByModule.put(entry.name, entry);
+            }
+        }
+
+        public ModuleCatalog build() {
+            List<SortedMap<Integer, ModuleEntry>> ordered = new ArrayList<>(partsByModule.values());
+            ordered.sort(Comparator.comparing(SortedMap::firstKey));
+            List<ModuleEntry> modules = new ArrayList<>(ordered.size());
+            for (SortedMap<Integer, ModuleEntry> parts : ordered) {
+                ModuleEntry first = parts.get(parts.firstKey());
+                modules.add(builtByModule.computeIfAbsent(first.name, name -> merge(parts)));
+            }
+            return new ModuleCatalog(modules);
+        }
+
+        private static ModuleEntry merge(SortedMap<Integer, ModuleEntry> parts) {
+            if (parts.size() == 1) {
+                return parts.get(parts.firstKey());
+            }
+            List<Release> releases = new ArrayList<>();
+            List<String> nextPageUrls = new ArrayList<>();
+            for (ModuleEntry part : parts.values()) {
+                releases.addAll(part.releases);
+                nextPageUrls.addAll(part.nextPageUrls);
+            }
+            return new ModuleEntry(parts.get(parts.firstKey()).name, releases, nextPageUrls);
+        }
+    }
+
+    public final List<ModuleEntry> modules;
+    private final Map<String, ModuleEntry> modulesByName;
+
+    private ModuleCatalog(List<ModuleEntry> modules) {
+        this.modules = Collections.unmodifiableList(modules);
+        this.modulesByName = new HashMap<>();
+        for (ModuleEntry module : modules) {
+            modulesByName.put(module.name, module);
+        }
+    }
+
+    public ModuleEntry getModule(String name) {
+        return modulesByName.get(name);
+    }
+
+    /**
+     * Returns a catalog with the module of the same name replaced by {@code module}.
+     */
+    public ModuleCatalog withModule(ModuleEntry module) {
+        List<ModuleEntry> replaced = new ArrayList<>(modules);
+        replaced.replaceAll(existing -> existing.name.equals(module.name) ? module : existing);
+        return new ModuleCatalog(replaced);
+    }
+
+    /**
+     * Parses a version tag (e.g., "v2.0.0") into its numeric components once, so releases can be
+     * ordered without re-parsing. A leading 'v' or 'V' is ignored, non-digit characters within a
+     * component are dropped, and a component that cannot be parsed counts as 0.
+     */
+    static int[] parseVersion(String tag) {
+        // Remove leading 'v' or 'V' if present.
+        if (tag.startsWith("v") || tag.startsWith("V")) {
+            tag = tag.substring(1);
+        }
+        String[] parts = tag.split("\\.");
+        int[] components = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            components[i] = parseVersionPart(parts[i]);
+        }
+        return components;
+    }
+
+    /**
+     * Compares two parsed versions, treating missing trailing components as 0.
+     * Returns a positive number if v1 > v2, negative if v1 < v2, or 0 if equal.
+     */
+    static int compareVersions(int[] v1, int[] v2) {
+        int len = Math.max(v1.length, v2.length);
+        for (int i = 0; i < len; i++) {
+            int num1 = i < v1.length ? v1[i] : 0;
+            int num2 = i < v2.length ? v2[i] : 0;
+            if (num1 != num2) {
+                return Integer.compare(num1, num2);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Parses a part of a version string to an integer, ignoring any non-digit characters.
+     * If the part has no digits or overflows an int, it returns 0.
+     */
+    private static int parseVersionPart(String part) {
+        long value = 0;
+        boolean hasDigits = false;
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    return 0;
+                }
+                hasDigits = true;
+            }
+        }
+        return hasDigits ? (int) value : 0;
+    }
+}
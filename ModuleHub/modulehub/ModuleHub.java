@@ -0,0 +1,1189 @@
+package modulehub;
+
+import java.io.*;
+import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The part of the module manager that does not need a window: it builds the catalog from the manifest
+ * index through the manifest cache and mirror, and installs, rolls back and prefetches releases. The
+ * window in {@code Main} and the command line in {@link Cli} both drive it; nothing here touches Swing
+ * or AWT, so the command line never loads them.
+ */
+public final class ModuleHub {
+
+    static final String MANIFEST_URL = "https://pastebin.com/raw/cPymZmpb";
+    private static final int MANIFEST_FETCH_THREADS = 8;
+    private static final int MANIFEST_LINK_TIMEOUT_MS = 10000;
+    static final int RELEASE_PAGE_SIZE = 30;
+    private static final long HTTP_CONNECT_TIMEOUT_MS = 10000;
+    /** Time allowed until response headers arrive, retries included. */
+    private static final long HTTP_REQUEST_TIMEOUT_MS = 30000;
+    /** Time a response body may go without delivering any bytes. */
+    private static final long HTTP_READ_TIMEOUT_MS = 30000;
+    private static final int HTTP_MAX_ATTEMPTS = 4;
+    static final int HTTP_OK = 200;
+    static final int HTTP_PARTIAL = 206;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final long MANIFEST_CACHE_TTL_MS = 10 * 60 * 1000L;
+    private static final long MANIFEST_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+    static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+    static final int EXTRACT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int DOWNLOAD_SEGMENTS = 4;
+    private static final long ARCHIVE_STORE_MAX_BYTES = 1024L * 1024 * 1024;
+    private static final int INSTALL_PARALLELISM = 2;
+    public static final int PRIORITY_USER = 0;
+    public static final int PRIORITY_BATCH = 10;
+    private static final long SEGMENTED_DOWNLOAD_MIN_BYTES = 8L * 1024 * 1024;
+    private static final long PREFETCH_MAX_ARCHIVE_BYTES = 64L * 1024 * 1024;
+    private static final long PREFETCH_STORE_MAX_BYTES = 256L * 1024 * 1024;
+    private static final long PREFETCH_BYTES_PER_SECOND = 2L * 1024 * 1024;
+    /** Installs extract straight off the HTTP stream unless -Dmodulehub.tempFileInstall=true is set. */
+    private static final boolean STREAMING_INSTALL = !Boolean.getBoolean("modulehub.tempFileInstall");
+
+    /** The module API version of the host, which compatible releases name in their notes. */
+    private final String hostVersion;
+    /** The manifest index, from -Dmodulehub.manifestUrl; the pastebin index unless set. */
+    private final String manifestUrl = System.getProperty("modulehub.manifestUrl", MANIFEST_URL);
+    private final int manifestLinkTimeoutMs = Integer.getInteger("modulehub.manifestLinkTimeoutMs",
+            MANIFEST_LINK_TIMEOUT_MS);
+    private final HttpTransport transport = new HttpTransport(
+            Duration.ofMillis(Long.getLong("modulehub.connectTimeoutMs", HTTP_CONNECT_TIMEOUT_MS)),
+            Duration.ofMillis(Long.getLong("modulehub.requestTimeoutMs", HTTP_REQUEST_TIMEOUT_MS)),
+            Long.getLong("modulehub.readTimeoutMs", HTTP_READ_TIMEOUT_MS),
+            Integer.getInteger("modulehub.maxAttempts", HTTP_MAX_ATTEMPTS));
+    private final ManifestCache manifestCache = new ManifestCache(
+            new File(getModuleRootPath(), ".modulehub-cache"),
+            MANIFEST_CACHE_TTL_MS, Long.getLong("modulehub.manifestCacheMaxBytes", MANIFEST_CACHE_MAX_BYTES),
+            Boolean.getBoolean("modulehub.offline"));
+    final ArchiveStore archiveStore = new ArchiveStore(
+            new File(System.getProperty("modulehub.archiveStore",
+                    getModuleRootPath() + File.separator + ".modulehub-cache" + File.separator + "archives")),
+            Long.getLong("modulehub.archiveStoreMaxBytes", ARCHIVE_STORE_MAX_BYTES), false);
+    /** Optional read-only store shared between desktops, e.g. on a network share. */
+    private final ArchiveStore sharedArchiveStore = System.getProperty("modulehub.sharedArchiveStore") == null ? null
+            : new ArchiveStore(new File(System.getProperty("modulehub.sharedArchiveStore")), 0, true);
+    /** Snapshot directory or mirror server consulted before the internet, from -Dmodulehub.mirror. */
+    private final Mirror mirror = System.getProperty("modulehub.mirror") == null ? null
+            : Mirror.of(System.getProperty("modulehub.mirror"), transport);
+    private final RangeDownloader rangeDownloader = new RangeDownloader(
+            transport, DOWNLOAD_SEGMENTS, SEGMENTED_DOWNLOAD_MIN_BYTES);
+    private final InstallScheduler installScheduler = new InstallScheduler(
+            Integer.getInteger("modulehub.installParallelism", INSTALL_PARALLELISM),
+            new TokenBucket(Long.getLong("modulehub.maxBytesPerSecond", 0L)));
+    private final InstalledModules installedModules = new InstalledModules(
+            new File(getModuleRootPath(), ".modulehub-cache" + File.separator + "installed.properties"));
+    private final Metrics metrics = new Metrics();
+    /** Optional JSON-lines log with one record per install, from -Dmodulehub.installLog=<file>. */
+    private final File installLog = System.getProperty("modulehub.installLog") == null ? null
+            : new File(System.getProperty("modulehub.installLog"));
+    /** Downloads the auto-selected release in the background; null unless enabled. */
+    private final Prefetcher prefetcher;
+
+    /**
+     * With {@code prefetch} set, releases passed to {@link #prefetchBestRelease} are downloaded in the
+     * background if -Dmodulehub.prefetch=true is also set.
+     */
+    public ModuleHub(String hostVersion, boolean prefetch) {
+        this.hostVersion = hostVersion;
+        prefetcher = prefetch && Boolean.getBoolean("modulehub.prefetch") ? new Prefetcher(transport,
+                new ArchiveStore(new File(getModuleRootPath(), ".modulehub-cache" + File.separator + "prefetch"),
+                        Long.getLong("modulehub.prefetchStoreMaxBytes", PREFETCH_STORE_MAX_BYTES), false),
+                archiveStore, sharedArchiveStore, mirror,
+                Long.getLong("modulehub.prefetchMaxArchiveBytes", PREFETCH_MAX_ARCHIVE_BYTES),
+                new TokenBucket(Long.getLong("modulehub.prefetchBytesPerSecond", PREFETCH_BYTES_PER_SECOND)))
+                : null;
+    }
+
+    /**
+     * Exposes the metrics over JMX. Not done for the command line, where loading the JMX classes would
+     * dominate start-up.
+     */
+    public void registerWithJmx() {
+        metrics.registerWithJmx();
+    }
+
+    /**
+     * Stops the install workers and any prefetch and removes the MBeans.
+     */
+    public void close() {
+        metrics.unregisterFromJmx();
+        installScheduler.shutdown();
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * Returns the module API version that releases must name in their compatibility marker.
+     */
+    String hostVersion() {
+        return hostVersion;
+    }
+
+    String manifestUrl() {
+        return manifestUrl;
+    }
+
+    /**
+     * Returns true if the manifest index is in the cache, so a catalog can be built from disk first.
+     */
+    public boolean isIndexCached() {
+        return manifestCache.get(manifestUrl) != null;
+    }
+
+    /**
+     * Builds the module catalog from the manifest index and every repository manifest it links to.
+     * With {@code cacheOnly} set, cached bodies are used regardless of their age. If {@code progress}
+     * is given, it is called once with the repository links (entry and error both null) and then with
+     * the result of each repository as it completes, on manifest worker threads. Without a progress
+     * callback nothing is searched, so release notes are left out and loaded on demand.
+     */
+    public ModuleCatalog buildCatalog(boolean cacheOnly, Consumer<SourceResult> progress) throws Exception {
+        long started = System.nanoTime();
+        String manifestLinksText = fetchManifestContent(manifestUrl, cacheOnly, 0).trim();
+        metrics.histogram("manifest.indexMs").recordSince(started);
+        // Using a lookahead regex to split on each new URL.
+        String[] manifestLinks = manifestLinksText.split("(?=https?://)");
+        ModuleCatalog.Builder builder = new ModuleCatalog.Builder();
+
+        // Fetch every repository manifest concurrently; results are merged as they complete,
+        // so a slow or dead repository only costs its own timeout. Modules are still ordered by
+        // their position in the index, so the order does not depend on which repository answers first.
+        ExecutorService manifestPool = newManifestPool();
+        CompletionService<SourceResult> completionService = new ExecutorCompletionService<>(manifestPool);
+        int pending = 0;
+        try {
+            for (String link : manifestLinks) {
+                String trimmedLink = link.trim();
+                if (!trimmedLink.isEmpty()) {
+                    int position = pending;
+                    if (progress != null) {
+                        progress.accept(new SourceResult(trimmedLink, position, null, null, null));
+                    }
+                    completionService.submit(() -> {
+                        try {
+                            ModuleCatalog.ModuleEntry entry = fetchFirstReleasePage(trimmedLink, cacheOnly, progress != null);
+                            // Tokenized here, in parallel, so the EDT only merges postings.
+                            return new SourceResult(trimmedLink, position, entry, null,
+                                    progress == null ? null : SearchIndex.documentOf(entry));
+                        } catch (Exception e) {
+                            return new SourceResult(trimmedLink, position, null, e.getMessage(), null);
+                        }
+                    });
+                    pending++;
+                }
+            }
+            for (; pending > 0; pending--) {
+                SourceResult result = completionService.take().get();
+                if (result.entry != null) {
+                    builder.add(result.entry, result.position);
+                } else {
+                    System.err.println(result.error);
+                }
+                if (progress != null) {
+                    progress.accept(result);
+                }
+            }
+        } finally {
+            manifestPool.shutdownNow();
+        }
+        long buildStarted = System.nanoTime();
+        ModuleCatalog built = builder.build();
+        metrics.histogram("catalog.buildMs").recordSince(buildStarted);
+        return built;
+    }
+
+    /**
+     * Revalidates the cached index and repository manifests that are older than the cache TTL with
+     * conditional GETs. The catalog is only re-parsed when at least one body actually changed; returns
+     * it, or null if nothing changed. A mirror is the source of truth for its site and offline mode
+     * never revalidates, so both return null straight away.
+     */
+    public ModuleCatalog revalidateManifest() {
+        if (manifestCache.isOffline() || mirror != null) {
+            return null;
+        }
+        try {
+            boolean changed = revalidateIfStale(manifestUrl, 0);
+            String[] manifestLinks = fetchManifestContent(manifestUrl, true, 0).trim().split("(?=https?://)");
+            ExecutorService manifestPool = newManifestPool();
+            CompletionService<Boolean> completionService = new ExecutorCompletionService<>(manifestPool);
+            int pending = 0;
+            try {
+                for (String link : manifestLinks) {
+                    String trimmedLink = link.trim();
+                    if (!trimmedLink.isEmpty()) {
+                        completionService.submit(() -> revalidateIfStale(releasePageUrl(trimmedLink, 1),
+                                manifestLinkTimeoutMs));
+                        pending++;
+                    }
+                }
+                for (; pending > 0; pending--) {
+                    try {
+                        changed |= completionService.take().get();
+                    } catch (ExecutionException e) {
+                        System.err.println("Error revalidating manifest: " + e.getCause().getMessage());
+                    }
+                }
+            } finally {
+                manifestPool.shutdownNow();
+            }
+            return changed ? buildCatalog(true, null) : null;
+        } catch (Exception ex) {
+            System.err.println("Error revalidating manifest: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private ExecutorService newManifestPool() {
+        return Executors.newFixedThreadPool(MANIFEST_FETCH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "manifest-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fetches the first page of a repository's releases and converts it into a catalog entry for its
+     * module. Older pages are only fetched when the user scrolls to them. Runs on a manifest worker thread.
+     */
+    private ModuleCatalog.ModuleEntry fetchFirstReleasePage(String link, boolean cacheOnly, boolean withNotes)
+            throws Exception {
+        // Extract module name from the URL.
+        String moduleName = extractRepositoryName(link);
+        String pageUrl = releasePageUrl(link, 1);
+        List<ModuleCatalog.Release> releases = withNotes ? fetchReleasePage(pageUrl, cacheOnly)
+                : fetchReleaseSummaries(pageUrl, cacheOnly);
+        List<String> nextPageUrls = releases.size() < RELEASE_PAGE_SIZE
+                ? Collections.emptyList() : Collections.singletonList(releasePageUrl(link, 2));
+        return new ModuleCatalog.ModuleEntry(moduleName, releases, nextPageUrls);
+    }
+
+    /**
+     * Fetches one page of a repository's releases.
+     */
+    public List<ModuleCatalog.Release> fetchReleasePage(String pageUrl, boolean cacheOnly) throws Exception {
+        try {
+            String manifestJson = fetchManifestContent(pageUrl, cacheOnly, manifestLinkTimeoutMs).trim();
+            return parseReleasePage(manifestJson, pageUrl);
+        } catch (Exception e) {
+            throw new Exception("Error processing manifest URL " + pageUrl + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetches one page of a repository's releases without their notes. A GitHub page is mostly notes
+     * and author details, so the few fields the catalog needs are cached next to the page; while the
+     * cached page is current it is neither read nor parsed.
+     */
+    private List<ModuleCatalog.Release> fetchReleaseSummaries(String pageUrl, boolean cacheOnly) throws Exception {
+        String kind = "releases-" + hostVersion;
+        if (mirror == null) {
+            String summaries = manifestCache.getDerived(pageUrl, kind, cacheOnly);
+            if (summaries != null) {
+                try {
+                    List<ModuleCatalog.Release> releases = parseReleaseSummaries(summaries, pageUrl);
+                    metrics.count("manifestCache.summaryHit");
+                    return releases;
+                } catch (JSONException e) {
+                    System.err.println("Ignoring corrupt release summaries for " + pageUrl + ": " + e.getMessage());
+                }
+            }
+        }
+        try {
+            String content = fetchManifestContent(pageUrl, cacheOnly, manifestLinkTimeoutMs);
+            List<ModuleCatalog.Release> releases = parseReleasePage(content.trim(), pageUrl);
+            JSONArray summaries = new JSONArray();
+            for (ModuleCatalog.Release release : releases) {
+                summaries.put(new JSONArray().put(release.name).put(release.tag).put(release.compatible)
+                        .put(release.downloadUrl).put(release.htmlUrl));
+            }
+            manifestCache.putDerived(pageUrl, kind, content, summaries.toString());
+            return releases;
+        } catch (Exception e) {
+            throw new Exception("Error processing manifest URL " + pageUrl + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static List<ModuleCatalog.Release> parseReleaseSummaries(String summaries, String pageUrl) {
+        JSONArray json = new JSONArray(summaries);
+        List<ModuleCatalog.Release> releases = new ArrayList<>(json.length());
+        for (int i = 0; i < json.length(); i++) {
+            JSONArray release = json.getJSONArray(i);
+            releases.add(new ModuleCatalog.Release(release.getString(0), release.getString(1), release.getBoolean(2),
+                    release.getString(3), release.getString(4), null, pageUrl));
+        }
+        return releases;
+    }
+
+    /**
+     * Converts the JSON of one releases page into catalog releases.
+     */
+    List<ModuleCatalog.Release> parseReleasePage(String manifestJson, String pageUrl) {
+        List<ModuleCatalog.Release> moduleReleases = new ArrayList<>();
+        if (manifestJson.startsWith("[")) {
+            long parseStarted = System.nanoTime();
+            JSONArray releases = new JSONArray(manifestJson);
+            // Check compatibility by searching for the marker.
+            String compatibilityMarker = "#AbstractModule-" + hostVersion;
+            for (int i = 0; i < releases.length(); i++) {
+                JSONObject release = releases.getJSONObject(i);
+
+                // Get both tag and release name.
+                String tagName = release.optString("tag_name", "unknown");
+                String releaseName = release.optString("name", "").trim();
+                if (releaseName.isEmpty()) {
+                    releaseName = "Unknown Release Title";
+                }
+                String body = release.optString("body", "No description available.");
+                boolean isCompatible = body.contains(compatibilityMarker);
+
+                moduleReleases.add(new ModuleCatalog.Release(releaseName, tagName, isCompatible,
+                        release.optString("zipball_url", ""),
+                        release.optString("html_url", "No URL available."), body, pageUrl));
+            }
+            metrics.histogram("manifest.parseMs").recordSince(parseStarted);
+        }
+        return moduleReleases;
+    }
+
+    /**
+     * Returns the URL of one page of a GitHub releases listing.
+     */
+    static String releasePageUrl(String link, int page) {
+        return link + (link.contains("?") ? "&" : "?") + "per_page=" + RELEASE_PAGE_SIZE + "&page=" + page;
+    }
+
+    /**
+     * Fetches the next page of every repository behind a module and returns the extended entry.
+     * Pages that fail to load stay pending so a later call retries them.
+     */
+    public ModuleCatalog.ModuleEntry fetchNextReleasePages(ModuleCatalog.ModuleEntry module) {
+        List<ModuleCatalog.Release> loaded = new ArrayList<>();
+        List<String> nextPageUrls = new ArrayList<>();
+        for (String pageUrl : module.nextPageUrls) {
+            try {
+                List<ModuleCatalog.Release> page = fetchReleasePage(pageUrl, false);
+                int added = module.countNewReleases(page);
+                loaded.addAll(page);
+                // A short page, or one with nothing new (a server ignoring the page parameter), is the last.
+                if (page.size() >= RELEASE_PAGE_SIZE && added > 0) {
+                    int pageIndex = pageUrl.lastIndexOf("page=") + "page=".length();
+                    int nextPage = Integer.parseInt(pageUrl.substring(pageIndex)) + 1;
+                    nextPageUrls.add(pageUrl.substring(0, pageIndex) + nextPage);
+                }
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+                nextPageUrls.add(pageUrl);
+            }
+        }
+        return module.withReleases(loaded, nextPageUrls);
+    }
+
+    /**
+     * Returns the module name of a repository URL.
+     */
+    public static String extractRepositoryName(String url) {
+        try {
+            URL parsedUrl = new URL(url);
+            String[] pathSegments = parsedUrl.getPath().split("/");
+            if (pathSegments.length >= 4) {
+                String repoName = pathSegments[3];
+                return formatRepositoryName(repoName);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return "Unknown Module";
+    }
+
+    private static String formatRepositoryName(String repoName) {
+        if (repoName.endsWith("-")) {
+            repoName = repoName.substring(0, repoName.length() - 1);
+        }
+        int dashIndex = repoName.indexOf('-');
+        if (dashIndex > 0) {
+            String mainPart = repoName.substring(0, dashIndex);
+            String secondary = repoName.substring(dashIndex + 1).trim();
+            // Only add parentheses if the secondary part is "Legacy"
+            if (secondary.equalsIgnoreCase("Legacy")) {
+                return mainPart + " (" + secondary + ")";
+            } else {
+                return mainPart + " " + secondary;
+            }
+        } else {
+            return repoName;
+        }
+    }
+
+    /**
+     * Starts prefetching the release that was just auto-selected, unless it is already installed or
+     * incompatible. Any prefetch for a previous selection is cancelled.
+     */
+    public void prefetchBestRelease(ModuleCatalog.ModuleEntry module) {
+        if (prefetcher == null) {
+            return;
+        }
+        ModuleCatalog.Release best = module.bestIndex == -1 ? null : module.releases.get(module.bestIndex);
+        InstalledModules.Record installed = installedModules.get(module.name);
+        // Releases already in an archive store are skipped by the prefetcher's thread, off the EDT.
+        if (best == null || !best.compatible || best.downloadUrl.isEmpty()
+                || (installed != null && installed.tag.equals(best.tag))) {
+            prefetcher.cancel();
+        } else {
+            prefetcher.prefetch(best.downloadUrl);
+        }
+    }
+
+    public void cancelPrefetch() {
+        if (prefetcher != null) {
+            prefetcher.cancel();
+        }
+    }
+
+    /**
+     * Returns the prefetch hit rate and volume for display, or null if prefetching is off.
+     */
+    public String prefetchStatus() {
+        return prefetcher == null ? null : prefetcher.toString();
+    }
+
+    /**
+     * Returns the body of a manifest URL through the on-disk cache. Fresh entries (or any entry when
+     * {@code cacheOnly} or offline mode is set) are served from disk; otherwise the entry is revalidated
+     * with a conditional GET, falling back to the stale body when the network is unreachable.
+     */
+    String fetchManifestContent(String urlStr, boolean cacheOnly, int timeoutMs) throws Exception {
+        if (mirror != null) {
+            try {
+                String body = mirror.readManifest(urlStr);
+                if (body != null) {
+                    metrics.count("mirror.manifestHit");
+                    return body;
+                }
+                metrics.count("mirror.manifestMiss");
+            } catch (IOException e) {
+                System.err.println("Mirror unavailable for " + urlStr + ": " + e.getMessage());
+            }
+        }
+        ManifestCache.Entry entry = manifestCache.get(urlStr);
+        if (entry != null && (cacheOnly || manifestCache.isOffline() || manifestCache.isFresh(entry))) {
+            metrics.count("manifestCache.hit");
+            return entry.body;
+        }
+        metrics.count(entry == null ? "manifestCache.miss" : "manifestCache.revalidate");
+        if (manifestCache.isOffline()) {
+            throw new IOException("Not in the manifest cache and offline: " + urlStr);
+        }
+        try {
+            // Not read back from the cache, which may already have evicted it to stay within budget.
+            return revalidateContent(urlStr, entry, timeoutMs);
+        } catch (IOException e) {
+            if (entry == null) {
+                throw e;
+            }
+            metrics.count("manifestCache.staleFallback");
+            System.err.println("Using stale manifest for " + urlStr + ": " + e.getMessage());
+            return entry.body;
+        }
+    }
+
+    /**
+     * Revalidates a URL whose cache entry is older than the TTL. Returns true if the server sent a body
+     * that differs from the cached one.
+     */
+    private boolean revalidateIfStale(String urlStr, int timeoutMs) throws Exception {
+        if (manifestCache.isFresh(urlStr)) {
+            return false;
+        }
+        ManifestCache.Entry entry = manifestCache.get(urlStr);
+        String body = revalidateContent(urlStr, entry, timeoutMs);
+        return entry == null || !entry.body.equals(body);
+    }
+
+    /**
+     * Issues a conditional GET for a URL using the validators of its cache entry, which may be null,
+     * and stores the result. Returns the current body: the cached one if the server reports it unchanged.
+     */
+    private String revalidateContent(String urlStr, ManifestCache.Entry entry, int timeoutMs) throws Exception {
+        HttpRequest.Builder request = transport.request(urlStr)
+                .header("Accept-Encoding", "gzip");
+        if (timeoutMs > 0) {
+            request.timeout(Duration.ofMillis(timeoutMs));
+        }
+        if (entry != null && entry.etag != null) {
+            request.header("If-None-Match", entry.etag);
+        }
+        if (entry != null && entry.lastModified != null) {
+            request.header("If-Modified-Since", entry.lastModified);
+        }
+        long started = System.nanoTime();
+        Metrics.Repository repository = metrics.repository(urlStr);
+        int status = -1;
+        try {
+            HttpResponse<InputStream> response = transport.send(request.build());
+            status = response.statusCode();
+            if (entry != null && status == HTTP_NOT_MODIFIED) {
+                response.body().close();
+                manifestCache.touch(urlStr, entry);
+                metrics.count("manifestCache.notModified");
+                repository.record(status, 0, started);
+                return entry.body;
+            }
+            String body = readContent(transport.openBody(HttpTransport.requireStatus(response, HTTP_OK)));
+            repository.record(status, body.getBytes(StandardCharsets.UTF_8).length, started);
+            manifestCache.put(urlStr, body, HttpTransport.header(response, "ETag"),
+                    HttpTransport.header(response, "Last-Modified"));
+            return body;
+        } catch (Exception e) {
+            repository.recordFailure(status, started);
+            throw e;
+        }
+    }
+
+    private String readContent(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns true if the module is installed and its best compatible release is newer than the
+     * installed one. Two hash lookups and a version comparison; cheap enough for a cell renderer.
+     */
+    public boolean isOutdated(ModuleCatalog.ModuleEntry module) {
+        InstalledModules.Record installed = installedModules.get(module.name);
+        if (installed == null || module.bestIndex == -1) {
+            return false;
+        }
+        ModuleCatalog.Release best = module.releases.get(module.bestIndex);
+        return best.compatible && ModuleCatalog.compareVersions(best.version, installed.version) > 0;
+    }
+
+    public InstalledModules.Record installed(String moduleName) {
+        return installedModules.get(moduleName);
+    }
+
+    /**
+     * Returns the record of the version a rollback of the module would restore, or null.
+     */
+    public InstalledModules.Record previouslyInstalled(String moduleName) {
+        return installedModules.getPrevious(moduleName);
+    }
+
+    public Set<String> installedNames() {
+        return installedModules.names();
+    }
+
+    /**
+     * Queues an install job. Returns the job already active for the same module instead, if there is one.
+     */
+    public InstallJob submit(InstallJob job) {
+        return installScheduler.submit(job);
+    }
+
+    public void cancel(InstallJob job) {
+        installScheduler.cancel(job);
+    }
+
+    /**
+     * Installs a release of a module into its directory, records it in the registry and returns the
+     * archive's SHA-256. {@code job} may be null.
+     */
+    public String install(String moduleName, ModuleCatalog.Release release, InstallJob job) throws Exception {
+        String digest = installRelease(release.downloadUrl, getModuleDirectory(moduleName), moduleName, job);
+        recordInstall(moduleName, release.tag, digest);
+        return digest;
+    }
+
+    /**
+     * Returns true if the version a module's last install replaced is still kept.
+     */
+    public boolean hasPreviousVersion(String moduleName) {
+        return StagedInstall.hasPrevious(getModuleDirectory(moduleName));
+    }
+
+    /**
+     * Records a finished install in the registry, with the file count from its install manifest.
+     */
+    private void recordInstall(String moduleName, String tag, String digest) throws IOException {
+        int fileCount = InstallManifest.load(getInstallManifestFile(moduleName)).paths().size();
+        installedModules.put(moduleName, tag, digest, fileCount);
+    }
+
+    /**
+     * Installs a release archive into {@code targetDirectory} and returns its SHA-256. Archives already
+     * held by the local or shared archive store are extracted without touching the network; anything
+     * downloaded is added to the local store for later reinstalls and rollbacks. Transfers are reported
+     * to, throttled and cancelled through {@code job}, which may be null.
+     */
+    String installRelease(String downloadUrl, File targetDirectory, String moduleName, InstallJob job)
+            throws Exception {
+        InstallTrace trace = new InstallTrace(moduleName, downloadUrl);
+        try {
+            trace.digest = installRelease(downloadUrl, targetDirectory, moduleName, job, trace);
+            return trace.digest;
+        } catch (Exception e) {
+            trace.error = e;
+            throw e;
+        } finally {
+            recordInstallMetrics(trace);
+        }
+    }
+
+    private String installRelease(String downloadUrl, File targetDirectory, String moduleName, InstallJob job,
+                                  InstallTrace trace) throws Exception {
+        File storedArchive = archiveStore.lookup(downloadUrl);
+        trace.source = "archive-store";
+        if (storedArchive == null && sharedArchiveStore != null) {
+            storedArchive = sharedArchiveStore.lookup(downloadUrl);
+            trace.source = "shared-archive-store";
+        }
+        if (storedArchive == null && mirror != null) {
+            storedArchive = mirror.localArchive(downloadUrl);
+            trace.source = "mirror";
+        }
+        trace.endPhase("lookup");
+        if (storedArchive != null) {
+            InstallJob.setStatus(job, "Extracting from archive store");
+            unzipFile(storedArchive, targetDirectory, moduleName);
+            trace.endPhase("extract");
+            return ArchiveStore.digestOf(storedArchive);
+        }
+        if (prefetcher != null) {
+            File prefetched = prefetcher.await(downloadUrl, job);
+            trace.endPhase("prefetchWait");
+            if (prefetched != null) {
+                trace.source = "prefetch";
+                InstallJob.setStatus(job, "Extracting prefetched archive");
+                String digest = ArchiveStore.digestOf(prefetched);
+                unzipFile(prefetched, targetDirectory, moduleName);
+                trace.endPhase("extract");
+                // Promote it to the regular store, which is what reinstalls and rollbacks use.
+                archiveStore.add(downloadUrl, prefetched, digest);
+                return digest;
+            }
+        }
+
+        // An HTTP mirror serves archives by digest; the digest it names is verified after download.
+        String fetchUrl = downloadUrl;
+        String expectedDigest = mirror == null ? null : mirror.remoteArchiveDigest(downloadUrl);
+        if (expectedDigest != null) {
+            fetchUrl = mirror.remoteArchiveUrl(expectedDigest);
+        }
+        String digest;
+        RangeDownloader.Probe probe = rangeDownloader.probe(fetchUrl);
+        trace.endPhase("probe");
+        if (job != null) {
+            job.totalBytes = probe.length;
+        }
+        InstallJob.setStatus(job, "Downloading");
+        if (STREAMING_INSTALL && !rangeDownloader.isSegmented(probe)) {
+            trace.source = expectedDigest == null ? "stream" : "mirror-stream";
+            File archiveCopy = archiveStore.newTempFile();
+            try {
+                digest = downloadAndExtract(probe.url, targetDirectory, moduleName, archiveCopy, expectedDigest, job);
+                // Downloading and extracting overlap here, so both rates are measured over this phase.
+                trace.endPhase("stream");
+                if (archiveCopy != null) {
+                    trace.downloadedBytes = archiveCopy.length();
+                    archiveStore.add(downloadUrl, archiveCopy, digest);
+                }
+            } finally {
+                if (archiveCopy != null) {
+                    archiveCopy.delete();
+                }
+            }
+        } else {
+            // Large range-capable archives are fetched in parallel segments to a stable path,
+            // so an interrupted download resumes on the next attempt.
+            trace.source = expectedDigest == null ? "download" : "mirror-download";
+            File archiveFile = new File(getDownloadDirectory(), ManifestCache.keyFor(downloadUrl) + ".zip");
+            rangeDownloader.download(probe, archiveFile, job);
+            trace.endPhase("download");
+            trace.downloadedBytes = archiveFile.length();
+            InstallJob.setStatus(job, "Extracting");
+            digest = ArchiveStore.sha256(archiveFile);
+            trace.endPhase("hash");
+            if (expectedDigest != null && !expectedDigest.equals(digest)) {
+                archiveFile.delete();
+            }
+            verifyDigest(downloadUrl, expectedDigest, digest);
+            unzipFile(archiveFile, targetDirectory, moduleName);
+            trace.endPhase("extract");
+            archiveStore.add(downloadUrl, archiveFile, digest);
+            archiveFile.delete();
+        }
+        return digest;
+    }
+
+    static void verifyDigest(String downloadUrl, String expectedDigest, String digest) throws IOException {
+        if (expectedDigest != null && !expectedDigest.equals(digest)) {
+            throw new IOException("Mirror sent an archive for " + downloadUrl + " with SHA-256 " + digest
+                    + ", expected " + expectedDigest);
+        }
+    }
+
+    /**
+     * Feeds a finished (or failed) install into the metrics and, if configured, the install log.
+     */
+    private void recordInstallMetrics(InstallTrace trace) {
+        metrics.count("install." + (trace.error == null ? "source." + trace.source : "failed"));
+        for (Map.Entry<String, Double> phase : trace.phasesMs.entrySet()) {
+            metrics.histogram("install." + phase.getKey() + "Ms").record(phase.getValue());
+        }
+        JSONObject line = new JSONObject();
+        line.put("time", Instant.now().toString());
+        line.put("module", trace.moduleName);
+        line.put("url", trace.downloadUrl);
+        line.put("source", trace.source);
+        line.put("outcome", trace.error == null ? "installed" : "failed");
+        if (trace.error != null) {
+            line.put("error", String.valueOf(trace.error));
+        }
+        line.put("totalMs", (System.nanoTime() - trace.started) / 1e6);
+        line.put("phasesMs", new JSONObject(trace.phasesMs));
+        if (trace.error == null) {
+            line.put("digest", trace.digest);
+            Double downloadMs = trace.phasesMs.getOrDefault("download", trace.phasesMs.get("stream"));
+            if (trace.downloadedBytes > 0 && downloadMs != null && downloadMs > 0) {
+                double mbPerSecond = trace.downloadedBytes / 1048576.0 / (downloadMs / 1000);
+                metrics.histogram("install.downloadMBps").record(mbPerSecond);
+                line.put("downloadedBytes", trace.downloadedBytes);
+                line.put("downloadMBps", mbPerSecond);
+            }
+            Double extractMs = trace.phasesMs.getOrDefault("extract", trace.phasesMs.get("stream"));
+            if (extractMs != null && extractMs > 0) {
+                // The install manifest lists every file of the release with its size.
+                InstallManifest installed = InstallManifest.load(getInstallManifestFile(trace.moduleName));
+                long bytes = installed.totalSize();
+                int entries = installed.paths().size();
+                double mbPerSecond = bytes / 1048576.0 / (extractMs / 1000);
+                double entriesPerSecond = entries / (extractMs / 1000);
+                metrics.histogram("install.extractMBps").record(mbPerSecond);
+                metrics.histogram("install.extractEntriesPerSecond").record(entriesPerSecond);
+                line.put("extractedEntries", entries);
+                line.put("extractedBytes", bytes);
+                line.put("extractMBps", mbPerSecond);
+                line.put("extractEntriesPerSecond", entriesPerSecond);
+            }
+        }
+        if (installLog != null) {
+            try {
+                synchronized (installLog) {
+                    Files.write(installLog.toPath(), (line + "\n").getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not write install log " + installLog + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Streams a zipball straight from the HTTP response into a staged copy of {@code destDir} without a
+     * temporary archive. Entries are written through a {@link FileChannel} using a direct buffer, and the
+     * SHA-256 of the whole archive is computed in the same pass. If {@code archiveCopy} is given, the
+     * raw archive bytes are also written to it. An archive whose digest differs from a non-null
+     * {@code expectedDigest} is rejected before anything is swapped in. Returns the digest in hex.
+     */
+    private String downloadAndExtract(String urlStr, File destDir, String moduleName, File archiveCopy,
+                                      String expectedDigest, InstallJob job) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        HttpResponse<InputStream> response = transport.send(transport.request(urlStr).build());
+        try (InputStream source = InstallJob.monitor(job,
+                     transport.openBody(HttpTransport.requireStatus(response, HTTP_OK)));
+             StagedInstall stage = StagedInstall.begin(destDir)) {
+            InstallManifest previous = loadInstallManifest(stage, moduleName);
+            InstallManifest current = new InstallManifest();
+            extractStream(source, stage, moduleName, archiveCopy, digest, previous, current);
+            String hex = toHex(digest.digest());
+            verifyDigest(urlStr, expectedDigest, hex);
+            finishInstall(stage, moduleName, previous, current);
+            return hex;
+        }
+    }
+
+    private void extractStream(InputStream source, StagedInstall stage, String moduleName, File archiveCopy,
+                               MessageDigest digest, InstallManifest previous, InstallManifest current)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        try (OutputStream copyOut = archiveCopy != null
+                     ? new BufferedOutputStream(new FileOutputStream(archiveCopy), STREAM_BUFFER_SIZE) : null;
+             DigestInputStream digestIn = new DigestInputStream(copyOut != null
+                     ? new TeeInputStream(source, copyOut) : source, digest);
+             ZipInputStream zis = new ZipInputStream(new BufferedInputStream(digestIn, STREAM_BUFFER_SIZE))) {
+            // Not closed separately: closing it would close the zip stream.
+            ReadableByteChannel entryChannel = Channels.newChannel(zis);
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                String newEntryName = entry.isDirectory() ? null : resolveEntryName(entry.getName(), moduleName);
+                if (newEntryName == null) {
+                    zis.closeEntry();
+                    continue;
+                }
+                Path liveFile = resolveEntryPath(stage.liveDir, newEntryName);
+                String relativePath = toRelativePath(stage.liveDir, liveFile);
+                Path outFile = resolveEntryPath(stage.stagingDir, relativePath);
+                // Local headers only carry the CRC when the entry has no data descriptor.
+                if (entry.getCrc() != -1 && previous.isUnchanged(relativePath, liveFile, entry.getSize(), entry.getCrc())) {
+                    stage.reuse(liveFile, outFile);
+                    current.put(relativePath, entry.getSize(), entry.getCrc());
+                    zis.closeEntry();
+                    continue;
+                }
+                Files.createDirectories(outFile.getParent());
+                // An earlier entry for the same path may have been linked to the live file; never write through it.
+                Files.deleteIfExists(outFile);
+                // Checksummed as it is written rather than re-read later: a later entry for the same path
+                // replaces the file, and the last one wins as in unzipFile.
+                CRC32 checksum = new CRC32();
+                long length = 0;
+                try (FileChannel out = FileChannel.open(outFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    while (entryChannel.read(buffer) != -1) {
+                        buffer.flip();
+                        checksum.update(buffer.duplicate());
+                        length += buffer.remaining();
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                }
+                zis.closeEntry();
+                // Size and CRC are known once the entry has been read to its end.
+                current.put(relativePath, entry.getSize(), entry.getCrc());
+                stage.check(outFile, length, checksum.getValue(), entry.getSize(), entry.getCrc());
+            }
+            // The zip stream stops at the central directory; drain the rest so the digest covers the whole archive.
+            byte[] drain = new byte[8192];
+            while (digestIn.read(drain) != -1) {
+                // Discard; only the digest matters.
+            }
+        }
+    }
+
+    /**
+     * Extracts an archive using its central directory into a staged copy of {@code destDir}. Target paths
+     * are resolved and validated up front, the directory tree is created once, and entries are then
+     * inflated in parallel straight to disk, each one verified as soon as it is written.
+     */
+    void unzipFile(File zipFile, File destDir, String moduleName) throws Exception {
+        unzipFile(zipFile, destDir, moduleName, EXTRACT_THREADS);
+    }
+
+    /**
+     * Extracts an archive as {@link #unzipFile(File, File, String)} does, on {@code threads} threads;
+     * a single thread is the sequential baseline the benchmarks compare against.
+     */
+    void unzipFile(File zipFile, File destDir, String moduleName, int threads) throws Exception {
+        try (ZipFile zip = new ZipFile(zipFile);
+             StagedInstall stage = StagedInstall.begin(destDir)) {
+            // Later entries win when two entries map to the same path, as with sequential extraction.
+            Map<Path, ZipEntry> targets = new LinkedHashMap<>();
+            Set<Path> directories = new HashSet<>();
+            InstallManifest previous = loadInstallManifest(stage, moduleName);
+            InstallManifest current = new InstallManifest();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String newEntryName = entry.isDirectory() ? null : resolveEntryName(entry.getName(), moduleName);
+                if (newEntryName == null) {
+                    continue;
+                }
+                Path liveFile = resolveEntryPath(stage.liveDir, newEntryName);
+                String relativePath = toRelativePath(stage.liveDir, liveFile);
+                Path target = resolveEntryPath(stage.stagingDir, relativePath);
+                current.put(relativePath, entry.getSize(), entry.getCrc());
+                // Files whose size and CRC match the previous install are reused rather than inflated again.
+                if (previous.isUnchanged(relativePath, liveFile, entry.getSize(), entry.getCrc())) {
+                    targets.remove(target);
+                    stage.reuse(liveFile, target);
+                    continue;
+                }
+                targets.put(target, entry);
+                directories.add(target.getParent());
+            }
+            for (Path directory : directories) {
+                Files.createDirectories(directory);
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>(targets.size());
+            for (Map.Entry<Path, ZipEntry> target : targets.entrySet()) {
+                tasks.add(() -> {
+                    try (InputStream in = zip.getInputStream(target.getValue())) {
+                        Files.copy(in, target.getKey(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    stage.verify(target.getKey(), target.getValue().getSize(), target.getValue().getCrc());
+                    return null;
+                });
+            }
+            ExecutorService extractPool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "extract");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                for (Future<Void> future : extractPool.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IOException("Error extracting " + zipFile.getName() + ": " + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            } finally {
+                extractPool.shutdownNow();
+            }
+            finishInstall(stage, moduleName, previous, current);
+        }
+    }
+
+    File getInstallManifestFile(String moduleName) {
+        return new File(getModuleRootPath(), ".modulehub-cache" + File.separator + "installs"
+                + File.separator + moduleName + ".manifest");
+    }
+
+    private String toRelativePath(File destDir, Path target) {
+        return destDir.toPath().toAbsolutePath().normalize().relativize(target).toString().replace(File.separatorChar, '/');
+    }
+
+    File getInstallManifestFile(String moduleName, String suffix) {
+        return new File(getInstallManifestFile(moduleName).getPath() + suffix);
+    }
+
+    /**
+     * Loads the install manifest of the module being staged. A staged manifest left behind, or a live
+     * directory that had to be restored, means a swap was interrupted, so it is unknown which release the
+     * manifest describes; it is dropped and every file extracted afresh.
+     */
+    private InstallManifest loadInstallManifest(StagedInstall stage, String moduleName) throws IOException {
+        File manifestFile = getInstallManifestFile(moduleName);
+        File stagedManifest = getInstallManifestFile(moduleName, ".staged");
+        if (stagedManifest.exists() || stage.recovered) {
+            Files.deleteIfExists(manifestFile.toPath());
+            Files.deleteIfExists(stagedManifest.toPath());
+        }
+        return InstallManifest.load(manifestFile);
+    }
+
+    /**
+     * Carries over files the module created itself, waits for the staged files to verify, swaps the
+     * staged tree in and records the new install manifest. Files the new release dropped stay behind
+     * with the previous version, along with its manifest.
+     */
+    private void finishInstall(StagedInstall stage, String moduleName, InstallManifest previous, InstallManifest current)
+            throws IOException, InterruptedException {
+        stage.carryOver(previous, current);
+        long waitStarted = System.nanoTime();
+        stage.awaitVerification();
+        metrics.histogram("install.verifyWaitMs").record((System.nanoTime() - waitStarted) / 1e6);
+        File manifestFile = getInstallManifestFile(moduleName);
+        File stagedManifest = getInstallManifestFile(moduleName, ".staged");
+        manifestFile.getParentFile().mkdirs();
+        current.save(stagedManifest);
+        long swapStarted = System.nanoTime();
+        stage.commit();
+        metrics.histogram("install.swapMs").record((System.nanoTime() - swapStarted) / 1e6);
+        File previousManifest = getInstallManifestFile(moduleName, ".previous");
+        if (manifestFile.exists()) {
+            Files.move(manifestFile.toPath(), previousManifest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.deleteIfExists(previousManifest.toPath());
+        }
+        Files.move(stagedManifest.toPath(), manifestFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Swaps a module back to the version it had before its last install or rollback: its directory,
+     * install manifest and registry record. Rolling back again restores the newer version.
+     */
+    public void rollback(String moduleName) throws IOException {
+        // The manifest is parked under the staged name first, so an interruption anywhere below drops
+        // the manifests instead of leaving one that describes the other directory.
+        File manifestFile = getInstallManifestFile(moduleName);
+        File stagedManifest = getInstallManifestFile(moduleName, ".staged");
+        File previousManifest = getInstallManifestFile(moduleName, ".previous");
+        if (manifestFile.exists()) {
+            Files.move(manifestFile.toPath(), stagedManifest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        StagedInstall.rollback(getModuleDirectory(moduleName));
+        if (previousManifest.exists()) {
+            Files.move(previousManifest.toPath(), manifestFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (stagedManifest.exists()) {
+            Files.move(stagedManifest.toPath(), previousManifest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        installedModules.rollback(moduleName);
+    }
+
+    /**
+     * Resolves an entry name against the module directory, rejecting names that would escape it
+     * (zip-slip) through ".." segments or absolute paths.
+     */
+    static Path resolveEntryPath(File destDir, String newEntryName) throws IOException {
+        Path root = destDir.toPath().toAbsolutePath().normalize();
+        Path target = root.resolve(newEntryName).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            throw new IOException("Archive entry escapes the module directory: " + newEntryName);
+        }
+        return target;
+    }
+
+    /**
+     * Maps a zipball entry to its path inside the module directory by stripping everything up to and
+     * including the module name (GitHub prefixes entries with "owner-repo-sha/"). Falls back to the
+     * bare file name. Returns null if the entry should be skipped.
+     */
+    static String resolveEntryName(String entryName, String moduleName) {
+        String newEntryName = null;
+        int index = entryName.indexOf(moduleName);
+        if (index != -1) {
+            newEntryName = entryName.substring(index + moduleName.length());
+            while (newEntryName.startsWith("/") || newEntryName.startsWith("\\")) {
+                newEntryName = newEntryName.substring(1);
+            }
+        }
+        if (newEntryName == null || newEntryName.isEmpty()) {
+            newEntryName = new File(entryName).getName();
+        }
+        return newEntryName.isEmpty() ? null : newEntryName;
+    }
+
+    /**
+     * Replaces {@code target} with {@code content} via a rename, so readers never see a partial file.
+     */
+    static void writeAtomically(File target, byte[] content) throws IOException {
+        File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+        try {
+            Files.write(temp.toPath(), content);
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes a file or directory tree. Symbolic links are removed, not followed.
+     */
+    static void deleteRecursively(File file) {
+        File[] children = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    static String toHex(byte[] bytes) {
+        // Not String.format, which is slow enough per byte to show up in start-up time.
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    private static File getDownloadDirectory() {
+        File directory = new File(getModuleRootPath(), ".modulehub-cache" + File.separator + "downloads");
+        directory.mkdirs();
+        return directory;
+    }
+
+    /**
+     * Returns the directory the host desktop loads modules from.
+     */
+    static String getModuleRootPath() {
+        String userHome = System.getProperty("user.home");
+        return userHome + File.separator + "Documents" + File.separator
+                + "echelon" + File.separator + "desktop" + File.separator + "module";
+    }
+
+    /**
+     * Returns the directory a module is installed in.
+     */
+    public static File getModuleDirectory(String moduleName) {
+        return new File(getModuleRootPath(), moduleName);
+    }
+
+    /**
+     * Puts a release archive into a snapshot store and returns its digest, copying it from the local
+     * stores when possible and downloading it otherwise. Downloads also land in the local store.
+     */
+    String exportArchive(String downloadUrl, ArchiveStore snapshotArchives) throws Exception {
+        File exported = snapshotArchives.lookup(downloadUrl);
+        if (exported != null) {
+            return ArchiveStore.digestOf(exported);
+        }
+        File local = archiveStore.lookup(downloadUrl);
+        if (local == null && sharedArchiveStore != null) {
+            local = sharedArchiveStore.lookup(downloadUrl);
+        }
+        if (local == null && mirror != null) {
+            local = mirror.localArchive(downloadUrl);
+        }
+        if (local == null) {
+            File archiveFile = new File(getDownloadDirectory(), ManifestCache.keyFor(downloadUrl) + ".zip");
+            rangeDownloader.download(rangeDownloader.probe(downloadUrl), archiveFile, null);
+            archiveStore.add(downloadUrl, archiveFile, ArchiveStore.sha256(archiveFile));
+            archiveFile.delete();
+            local = archiveStore.lookup(downloadUrl);
+        }
+        File part = snapshotArchives.newTempFile();
+        try {
+            Files.copy(local.toPath(), part.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            String digest = ArchiveStore.digestOf(local);
+            snapshotArchives.add(downloadUrl, part, digest);
+            return digest;
+        } finally {
+            part.delete();
+        }
+    }
+}
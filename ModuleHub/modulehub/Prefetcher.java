@@ -0,0 +1,172 @@
+package modulehub;
+
+import java.io.*;
+import java.net.http.HttpResponse;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Speculatively downloads one release archive at a time into a small, evictable archive store.
+ * Prefetches run on a minimum-priority thread behind their own bandwidth cap, are abandoned once
+ * an archive exceeds the size budget, and are cancelled when a different release is requested.
+ * An install of the release being prefetched waits for it, uncapped, instead of downloading again.
+ * Releases already in the install archive stores or a directory mirror are not prefetched, and an
+ * HTTP mirror is downloaded from in place of the internet, as installs do. These lookups touch the
+ * disk, so they run on the prefetch thread rather than the caller's.
+ */
+final class Prefetcher {
+
+    private final HttpTransport transport;
+    private final ArchiveStore store;
+    private final ArchiveStore installStore;
+    /** Null unless a shared store is configured. */
+    private final ArchiveStore sharedStore;
+    private final Mirror mirror;
+    private final long maxArchiveBytes;
+    private final TokenBucket bandwidth;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private String currentUrl;
+    private InstallJob currentJob;
+    private Future<?> currentFuture;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final AtomicLong bytesFetched = new AtomicLong();
+
+    Prefetcher(HttpTransport transport, ArchiveStore store, ArchiveStore installStore, ArchiveStore sharedStore,
+               Mirror mirror, long maxArchiveBytes, TokenBucket bandwidth) {
+        this.transport = transport;
+        this.store = store;
+        this.installStore = installStore;
+        this.sharedStore = sharedStore;
+        this.mirror = mirror;
+        this.maxArchiveBytes = maxArchiveBytes;
+        this.bandwidth = bandwidth;
+    }
+
+    synchronized void prefetch(String downloadUrl) {
+        if (downloadUrl.equals(currentUrl)) {
+            return;
+        }
+        cancel();
+        InstallJob job = new InstallJob("prefetch", downloadUrl, Integer.MAX_VALUE, null);
+        job.bandwidth = bandwidth;
+        currentUrl = downloadUrl;
+        currentJob = job;
+        currentFuture = executor.submit(() -> {
+            fetch(downloadUrl, job);
+            return null;
+        });
+    }
+
+    synchronized void cancel() {
+        if (currentFuture != null && !currentFuture.isDone()) {
+            currentJob.state = InstallJob.State.CANCELLED;
+            currentFuture.cancel(true);
+            cancelled.incrementAndGet();
+        }
+        currentUrl = null;
+        currentJob = null;
+        currentFuture = null;
+    }
+
+    /**
+     * Returns the prefetched archive for an install, waiting for a prefetch of the same release
+     * that is still running, or null on a miss. Counts towards the hit rate.
+     */
+    File await(String downloadUrl, InstallJob installJob) throws IOException {
+        Future<?> future;
+        synchronized (this) {
+            future = downloadUrl.equals(currentUrl) ? currentFuture : null;
+            if (future != null) {
+                // The user is now waiting on it, so it no longer needs to stay in the background.
+                currentJob.bandwidth = null;
+            }
+        }
+        if (future != null) {
+            InstallJob.setStatus(installJob, "Finishing prefetch");
+            while (!future.isDone()) {
+                if (installJob != null && installJob.state == InstallJob.State.CANCELLED) {
+                    throw new InterruptedIOException("Install cancelled");
+                }
+                try {
+                    future.get(250, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Check for cancellation and keep waiting.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for prefetch");
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        File archive = store.lookup(downloadUrl);
+        (archive != null ? hits : misses).incrementAndGet();
+        return archive;
+    }
+
+    private void fetch(String downloadUrl, InstallJob job) throws Exception {
+        // Installs extract these straight from where they are.
+        if (store.lookup(downloadUrl) != null || installStore.lookup(downloadUrl) != null
+                || (sharedStore != null && sharedStore.lookup(downloadUrl) != null)
+                || (mirror != null && mirror.localArchive(downloadUrl) != null)) {
+            return;
+        }
+        String fetchUrl = downloadUrl;
+        String expectedDigest = mirror == null ? null : mirror.remoteArchiveDigest(downloadUrl);
+        if (expectedDigest != null) {
+            fetchUrl = mirror.remoteArchiveUrl(expectedDigest);
+        }
+        File part = store.newTempFile();
+        try {
+            HttpResponse<InputStream> response = transport.send(transport.request(fetchUrl).build());
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = InstallJob.monitor(job,
+                    transport.openBody(HttpTransport.requireStatus(response, ModuleHub.HTTP_OK)));
+                 OutputStream out = new DigestOutputStream(new FileOutputStream(part), digest)) {
+                byte[] buffer = new byte[64 * 1024];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    if (job.bytesTransferred.get() > maxArchiveBytes) {
+                        throw new IOException("Archive exceeds the prefetch budget");
+                    }
+                }
+            }
+            bytesFetched.addAndGet(job.bytesTransferred.get());
+            String hex = ModuleHub.toHex(digest.digest());
+            ModuleHub.verifyDigest(downloadUrl, expectedDigest, hex);
+            store.add(downloadUrl, part, hex);
+        } finally {
+            part.delete();
+        }
+    }
+
+    void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        int lookups = hits.get() + misses.get();
+        return String.format("Prefetch: %d/%d hits%s, %.1f MB fetched, %d cancelled", hits.get(), lookups,
+                lookups == 0 ? "" : " (" + hits.get() * 100 / lookups + "%)", bytesFetched.get() / 1048576.0,
+                cancelled.get());
+    }
+}
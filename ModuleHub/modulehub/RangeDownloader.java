@@ -0,0 +1,199 @@
+package modulehub;
+
+import java.io.*;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads archives in parallel byte-range segments into a preallocated file. Completed segments
+ * are recorded in a sidecar journal so an interrupted download resumes where it left off. Servers
+ * without range support, or archives below the size threshold, are fetched as a single stream.
+ */
+final class RangeDownloader {
+
+    static final class Probe {
+        /** The URL after redirects, so segment requests skip the redirect hop. */
+        final String url;
+        final long length;
+        final boolean acceptsRanges;
+        /** Strong ETag or Last-Modified value used for If-Range, or null. */
+        final String validator;
+
+        Probe(String url, long length, boolean acceptsRanges, String validator) {
+            this.url = url;
+            this.length = length;
+            this.acceptsRanges = acceptsRanges;
+            this.validator = validator;
+        }
+    }
+
+    private final HttpTransport transport;
+    private final int segments;
+    private final long minSegmentedBytes;
+
+    RangeDownloader(HttpTransport transport, int segments, long minSegmentedBytes) {
+        this.transport = transport;
+        this.segments = segments;
+        this.minSegmentedBytes = minSegmentedBytes;
+    }
+
+    Probe probe(String urlStr) throws IOException {
+        HttpResponse<InputStream> response = transport.send(
+                transport.request(urlStr).method("HEAD", HttpRequest.BodyPublishers.noBody()).build());
+        response.body().close();
+        if (response.statusCode() != ModuleHub.HTTP_OK) {
+            // Some servers reject HEAD; a plain GET will still work.
+            return new Probe(urlStr, -1, false, null);
+        }
+        String etag = HttpTransport.header(response, "ETag");
+        String validator = etag != null && !etag.startsWith("W/") ? etag : HttpTransport.header(response, "Last-Modified");
+        long length = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+        return new Probe(response.uri().toString(), length,
+                "bytes".equalsIgnoreCase(HttpTransport.header(response, "Accept-Ranges")), validator);
+    }
+
+    boolean isSegmented(Probe probe) {
+        return probe.acceptsRanges && probe.length >= minSegmentedBytes;
+    }
+
+    void download(Probe probe, File destination, InstallJob job) throws Exception {
+        File journalFile = new File(destination.getPath() + ".journal");
+        if (!isSegmented(probe)) {
+            journalFile.delete();
+            downloadStream(probe.url, destination, job);
+            return;
+        }
+        Properties journal = loadJournal(journalFile);
+        boolean resumable = journal != null
+                && Long.toString(probe.length).equals(journal.getProperty("length"))
+                && String.valueOf(probe.validator).equals(journal.getProperty("validator"))
+                && destination.length() == probe.length;
+        if (!resumable) {
+            journal = new Properties();
+            journal.setProperty("length", Long.toString(probe.length));
+            journal.setProperty("validator", String.valueOf(probe.validator));
+            journal.setProperty("segments", Integer.toString(segments));
+            try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+                file.setLength(probe.length);
+            }
+            saveJournal(journal, journalFile);
+        }
+
+        int segmentCount = Integer.parseInt(journal.getProperty("segments"));
+        long segmentSize = (probe.length + segmentCount - 1) / segmentCount;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < segmentCount; i++) {
+            if ("true".equals(journal.getProperty("segment." + i))) {
+                if (job != null) {
+                    job.bytesTransferred.addAndGet(Math.min(probe.length, (i + 1) * segmentSize) - i * segmentSize);
+                }
+                continue;
+            }
+            int segment = i;
+            long start = i * segmentSize;
+            long end = Math.min(probe.length, start + segmentSize) - 1;
+            Properties segmentJournal = journal;
+            tasks.add(() -> {
+                downloadSegment(probe, destination, start, end, job);
+                markComplete(segmentJournal, segment, journalFile);
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(segmentCount, runnable -> {
+            Thread thread = new Thread(runnable, "download-segment");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // The journal keeps the completed segments for the next attempt.
+                    throw new IOException("Download interrupted: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        journalFile.delete();
+    }
+
+    private void downloadSegment(Probe probe, File destination, long start, long end, InstallJob job)
+            throws IOException {
+        HttpRequest.Builder request = transport.request(probe.url)
+                .header("Range", "bytes=" + start + "-" + end);
+        if (probe.validator != null) {
+            request.header("If-Range", probe.validator);
+        }
+        HttpResponse<InputStream> response = transport.send(request.build());
+        long position = start;
+        // A stalled segment fails on the transport's read timeout, so the journal can resume it.
+        try (InputStream in = InstallJob.monitor(job, transport.openBody(HttpTransport.requireStatus(response, ModuleHub.HTTP_PARTIAL)));
+             FileChannel out = FileChannel.open(destination.toPath(), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[64 * 1024];
+            int bytesRead;
+            // Never read past the segment, so a misbehaving server cannot overwrite its neighbour.
+            while (position <= end
+                    && (bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, end + 1 - position))) != -1) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (chunk.hasRemaining()) {
+                    position += out.write(chunk, position);
+                }
+            }
+            if (position == end + 1 && in.read() != -1) {
+                throw new IOException("Segment " + start + "-" + end + " sent more than " + (end + 1 - start) + " bytes");
+            }
+        }
+        if (position != end + 1) {
+            throw new IOException("Segment " + start + "-" + end + " ended after " + (position - start) + " bytes");
+        }
+    }
+
+    private void downloadStream(String urlStr, File destination, InstallJob job) throws IOException {
+        HttpResponse<InputStream> response = transport.send(transport.request(urlStr).build());
+        try (InputStream in = InstallJob.monitor(job, transport.openBody(HttpTransport.requireStatus(response, ModuleHub.HTTP_OK)));
+             FileOutputStream out = new FileOutputStream(destination)) {
+            byte[] buffer = new byte[64 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    private synchronized void markComplete(Properties journal, int segment, File journalFile) throws IOException {
+        journal.setProperty("segment." + segment, "true");
+        saveJournal(journal, journalFile);
+    }
+
+    private static Properties loadJournal(File journalFile) {
+        if (!journalFile.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(journalFile)) {
+            Properties journal = new Properties();
+            journal.load(in);
+            return journal;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void saveJournal(Properties journal, File journalFile) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        journal.store(out, null);
+        ModuleHub.writeAtomically(journalFile, out.toByteArray());
+    }
+}
@@ -0,0 +1,167 @@
+package modulehub;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index from terms (module name words, tags and release-note words) to modules.
+ * Terms are kept sorted so a query word matches every term it is a prefix of; the postings of all
+ * query words are intersected. Entries can be added incrementally as manifests arrive, in whatever
+ * order they complete, so each module keeps its catalog position and results are returned in that order.
+ */
+public final class SearchIndex {
+
+    /** Longer tokens are almost always URLs or hashes and are not worth indexing. */
+    private static final int MAX_TERM_LENGTH = 40;
+    /**
+     * Prefixes up to this length get their own postings, since they would otherwise have to union
+     * thousands of terms on every keystroke.
+     */
+    private static final int SHORT_PREFIX_LENGTH = 2;
+
+    /** The terms of one module entry, computed off the EDT. */
+    public static final class Document {
+        final String module;
+        final Set<String> terms;
+        final boolean compatible;
+
+        Document(String module, Set<String> terms, boolean compatible) {
+            this.module = module;
+            this.terms = terms;
+            this.compatible = compatible;
+        }
+    }
+
+    private final Map<String, Integer> idsByModule = new HashMap<>();
+    private final List<String> modules = new ArrayList<>();
+    /** Catalog position of each module, by id. */
+    private final List<Integer> positions = new ArrayList<>();
+    private final TreeMap<String, BitSet> postings = new TreeMap<>();
+    private final Map<String, BitSet> shortPrefixPostings = new HashMap<>();
+    private final BitSet compatibleModules = new BitSet();
+
+    public static SearchIndex of(ModuleCatalog catalog) {
+        SearchIndex index = new SearchIndex();
+        for (int position = 0; position < catalog.modules.size(); position++) {
+            index.add(documentOf(catalog.modules.get(position)), position);
+        }
+        return index;
+    }
+
+    public static Document documentOf(ModuleCatalog.ModuleEntry module) {
+        Set<String> terms = new HashSet<>();
+        tokenize(module.name, terms);
+        boolean compatible = false;
+        for (ModuleCatalog.Release release : module.releases) {
+            tokenize(release.name, terms);
+            tokenize(release.tag, terms);
+            String body = release.getBody();
+            if (body != null) {
+                tokenize(body, terms);
+            }
+            compatible |= release.compatible;
+        }
+        return new Document(module.name, terms, compatible);
+    }
+
+    /**
+     * Adds more terms for a module, such as those of further release pages, keeping the position of an
+     * already indexed module. A module not yet indexed is ordered after every other.
+     */
+    public void add(Document document) {
+        add(document, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds a module's terms, merging them with any already indexed for a module of the same name.
+     * {@code position} orders the module in results; as in the catalog, a module merged from several
+     * repositories takes the position of the first of them.
+     */
+    public void add(Document document, int position) {
+        Integer id = idsByModule.get(document.module);
+        if (id == null) {
+            id = modules.size();
+            idsByModule.put(document.module, id);
+            modules.add(document.module);
+            positions.add(position);
+        } else if (position < positions.get(id)) {
+            positions.set(id, position);
+        }
+        for (String term : document.terms) {
+            postings.computeIfAbsent(term, t -> new BitSet()).set(id);
+            for (int length = 1; length <= Math.min(SHORT_PREFIX_LENGTH, term.length()); length++) {
+                shortPrefixPostings.computeIfAbsent(term.substring(0, length), p -> new BitSet()).set(id);
+            }
+        }
+        if (document.compatible) {
+            compatibleModules.set(id);
+        }
+    }
+
+    /**
+     * Returns the modules matching every word of {@code query} as a prefix, in catalog order.
+     */
+    public List<String> search(String query, boolean compatibleOnly) {
+        BitSet matches = new BitSet();
+        matches.set(0, modules.size());
+        if (compatibleOnly) {
+            matches.and(compatibleModules);
+        }
+        Set<String> words = new LinkedHashSet<>();
+        tokenize(query, words);
+        for (String word : words) {
+            if (matches.isEmpty()) {
+                break;
+            }
+            if (word.length() <= SHORT_PREFIX_LENGTH) {
+                matches.and(shortPrefixPostings.getOrDefault(word, new BitSet()));
+                continue;
+            }
+            BitSet wordMatches = new BitSet();
+            for (Map.Entry<String, BitSet> entry : postings.tailMap(word, true).entrySet()) {
+                if (!entry.getKey().startsWith(word)) {
+                    break;
+                }
+                wordMatches.or(entry.getValue());
+            }
+            matches.and(wordMatches);
+        }
+        List<Integer> ids = new ArrayList<>(matches.cardinality());
+        for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+            ids.add(id);
+        }
+        ids.sort(Comparator.comparingInt(positions::get));
+        List<String> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            result.add(modules.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Splits text into lower-case runs of letters and digits.
+     */
+    private static void tokenize(String text, Set<String> terms) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start == -1) {
+                start = i;
+            } else if (!wordChar && start != -1) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+    }
+}
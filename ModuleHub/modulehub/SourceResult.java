@@ -0,0 +1,24 @@
+package modulehub;
+
+/**
+ * Outcome of loading one repository manifest: either its entry or an error message.
+ * With neither set it only announces that the repository is being loaded.
+ */
+public final class SourceResult {
+    public final String link;
+    /** Position of the repository in the manifest index. */
+    public final int position;
+    public final ModuleCatalog.ModuleEntry entry;
+    public final String error;
+    /** The entry's search terms, when loading for the GUI. */
+    public final SearchIndex.Document document;
+
+    SourceResult(String link, int position, ModuleCatalog.ModuleEntry entry, String error,
+                 SearchIndex.Document document) {
+        this.link = link;
+        this.position = position;
+        this.entry = entry;
+        this.error = error;
+        this.document = document;
+    }
+}
@@ -0,0 +1,238 @@
+package modulehub;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A release being installed next to a module directory rather than into it. Entries are written
+ * under a sibling {@code .<module>.staging} directory and each finished file is checked against its
+ * archive CRC on a worker pool while extraction carries on. {@link #commit} then renames the live
+ * directory to {@code .<module>.previous} and the staged one into its place, so the swap costs two
+ * renames whatever the module's size, and the replaced version stays on disk for {@link #rollback}.
+ * A failed install only ever touches the staging directory.
+ */
+final class StagedInstall implements Closeable {
+
+    private static final int VERIFY_BUFFER_SIZE = 64 * 1024;
+
+    final File liveDir;
+    final File stagingDir;
+    private final ExecutorService verifyPool = Executors.newFixedThreadPool(ModuleHub.EXTRACT_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "verify");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Submitted to by several extraction threads; drained once extraction has finished. */
+    private final Queue<Future<Void>> verifications = new ConcurrentLinkedQueue<>();
+    /** True if the live directory had to be restored, so its install manifest cannot be trusted. */
+    final boolean recovered;
+    private boolean committed;
+
+    private StagedInstall(File liveDir, boolean recovered) {
+        this.liveDir = liveDir.getAbsoluteFile();
+        this.stagingDir = siblingOf(this.liveDir, "staging");
+        this.recovered = recovered;
+    }
+
+    /**
+     * Starts a fresh staging directory for {@code liveDir}, first finishing or undoing any swap
+     * that was interrupted part-way.
+     */
+    static StagedInstall begin(File liveDir) throws IOException {
+        StagedInstall stage = new StagedInstall(liveDir, recover(liveDir));
+        ModuleHub.deleteRecursively(stage.stagingDir);
+        Files.createDirectories(stage.stagingDir.toPath());
+        return stage;
+    }
+
+    static File siblingOf(File liveDir, String suffix) {
+        File absolute = liveDir.getAbsoluteFile();
+        return new File(absolute.getParentFile(), "." + absolute.getName() + "." + suffix);
+    }
+
+    /**
+     * Repairs the directories after a crash part-way through {@link #commit} or {@link #rollback}:
+     * a version renamed away with nothing in its place is put back, and leftovers are removed.
+     * Returns true if the live directory was restored.
+     */
+    static boolean recover(File liveDir) throws IOException {
+        File previousDir = siblingOf(liveDir, "previous");
+        File swap = siblingOf(liveDir, "swap");
+        boolean restored = false;
+        if (swap.isDirectory()) {
+            if (!liveDir.exists()) {
+                Files.move(swap.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                restored = true;
+            } else if (!previousDir.exists()) {
+                Files.move(swap.toPath(), previousDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        if (!liveDir.exists() && previousDir.isDirectory()) {
+            Files.move(previousDir.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            restored = true;
+        }
+        String discardedPrefix = siblingOf(liveDir, "discarded-").getName();
+        File[] siblings = liveDir.getAbsoluteFile().getParentFile().listFiles(
+                (dir, name) -> name.startsWith(discardedPrefix));
+        if (siblings != null) {
+            for (File discarded : siblings) {
+                ModuleHub.deleteRecursively(discarded);
+            }
+        }
+        return restored;
+    }
+
+    static boolean hasPrevious(File liveDir) {
+        return siblingOf(liveDir, "previous").isDirectory();
+    }
+
+    /**
+     * Reuses a file of the live install unchanged, as a hard link where the file system allows it.
+     */
+    void reuse(Path liveFile, Path stagedFile) throws IOException {
+        Files.createDirectories(stagedFile.getParent());
+        try {
+            Files.createLink(stagedFile, liveFile);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(liveFile, stagedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Carries over files in the live directory that no release put there, such as settings the
+     * module wrote itself. Files of the previous release that the new one dropped are left behind.
+     */
+    void carryOver(InstallManifest previous, InstallManifest current) throws IOException {
+        if (!liveDir.isDirectory()) {
+            return;
+        }
+        Path liveRoot = liveDir.toPath();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(liveRoot)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String relativePath = liveRoot.relativize(file).toString().replace(File.separatorChar, '/');
+            if (!previous.contains(relativePath) && !current.contains(relativePath)) {
+                reuse(file, stagingDir.toPath().resolve(liveRoot.relativize(file)));
+            }
+        }
+    }
+
+    /**
+     * Queues a CRC check of a staged file. A CRC of -1 (unknown) only checks the size.
+     */
+    void verify(Path stagedFile, long size, long crc) {
+        verifications.add(verifyPool.submit(() -> {
+            CRC32 checksum = new CRC32();
+            long length = 0;
+            try (FileChannel in = FileChannel.open(stagedFile, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(VERIFY_BUFFER_SIZE);
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    buffer.flip();
+                    checksum.update(buffer);
+                    buffer.clear();
+                    length += read;
+                }
+            }
+            check(stagedFile, length, checksum.getValue(), size, crc);
+            return null;
+        }));
+    }
+
+    /**
+     * Fails if a staged file's written length and CRC differ from the archive's. A CRC of -1
+     * (unknown) only checks the size.
+     */
+    void check(Path stagedFile, long length, long writtenCrc, long size, long crc) throws IOException {
+        if ((size != -1 && length != size) || (crc != -1 && writtenCrc != crc)) {
+            throw new IOException("Verification failed for " + stagingDir.toPath().relativize(stagedFile)
+                    + ": wrote " + length + " bytes with CRC " + Long.toHexString(writtenCrc)
+                    + ", archive has " + size + " bytes with CRC " + Long.toHexString(crc));
+        }
+    }
+
+    /**
+     * Waits for every queued verification and throws the first failure.
+     */
+    void awaitVerification() throws IOException, InterruptedException {
+        Future<Void> verification;
+        while ((verification = verifications.poll()) != null) {
+            try {
+                verification.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+            }
+        }
+    }
+
+    /**
+     * Swaps the staged tree in. The version it replaces becomes the previous one; the version before
+     * that is moved out of the way with a rename and only deleted once the swap is done.
+     */
+    void commit() throws IOException {
+        File previousDir = siblingOf(liveDir, "previous");
+        File discarded = null;
+        if (previousDir.exists()) {
+            discarded = siblingOf(liveDir, "discarded-" + System.nanoTime());
+            Files.move(previousDir.toPath(), discarded.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (liveDir.exists()) {
+            Files.move(liveDir.toPath(), previousDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        try {
+            Files.move(stagingDir.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (previousDir.exists() && !liveDir.exists()) {
+                Files.move(previousDir.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            throw e;
+        }
+        committed = true;
+        if (discarded != null) {
+            ModuleHub.deleteRecursively(discarded);
+        }
+    }
+
+    /**
+     * Exchanges the live directory with the previous version, so rolling back twice is a no-op.
+     */
+    static void rollback(File liveDir) throws IOException {
+        recover(liveDir);
+        File previousDir = siblingOf(liveDir, "previous");
+        if (!previousDir.isDirectory()) {
+            throw new IOException("No previous version of " + liveDir.getName() + " to roll back to");
+        }
+        File swap = siblingOf(liveDir, "swap");
+        ModuleHub.deleteRecursively(swap);
+        Files.move(liveDir.toPath(), swap.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(previousDir.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(swap.toPath(), previousDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Stops outstanding verifications and, unless committed, discards the staging directory. */
+    @Override
+    public void close() {
+        verifyPool.shutdownNow();
+        if (!committed) {
+            ModuleHub.deleteRecursively(stagingDir);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package modulehub;
+
+import java.io.*;
+
+/**
+ * Copies every byte read from the wrapped stream to a second output stream.
+ */
+final class TeeInputStream extends FilterInputStream {
+
+    private final OutputStream copy;
+
+    TeeInputStream(InputStream in, OutputStream copy) {
+        super(in);
+        this.copy = copy;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            copy.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int bytesRead = super.read(buffer, offset, length);
+        if (bytesRead > 0) {
+            copy.write(buffer, offset, bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes must still reach the copy.
+        byte[] buffer = new byte[8192];
+        long skipped = 0;
+        int bytesRead;
+        while (skipped < n && (bytesRead = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+            skipped += bytesRead;
+        }
+        return skipped;
+    }
+}
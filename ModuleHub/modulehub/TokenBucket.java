@@ -0,0 +1,43 @@
+package modulehub;
+
+import java.io.*;
+
+/**
+ * Token bucket shared by all transfers. Holds at most one second of budget; a read may overdraw
+ * it, after which later reads wait until the bucket is positive again.
+ */
+final class TokenBucket {
+
+    private final long bytesPerSecond;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    /** A rate of 0 or less means unlimited. */
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+    }
+
+    synchronized void acquire(int bytes) throws InterruptedIOException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        try {
+            refill();
+            while (tokens <= 0) {
+                wait(Math.max(1, (long) Math.ceil(-tokens * 1000 / bytesPerSecond)));
+                refill();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttled");
+        }
+        tokens -= bytes;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(bytesPerSecond, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,65 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Looks archives up in stores whose blobs have been tampered with after they were added.
+ */
+class ArchiveStoreTest {
+
+    private static final String URL = "https://api.github.com/repos/owner/module/zipball/v1.0";
+
+    @TempDir
+    File directory;
+
+    /**
+     * Adds an archive to a writable store at {@code directory} and returns its blob.
+     */
+    private File addArchive(String content) throws IOException {
+        ArchiveStore store = new ArchiveStore(directory, Long.MAX_VALUE, false);
+        File archive = store.newTempFile();
+        Files.write(archive.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        String digest = ArchiveStore.sha256(archive);
+        store.add(URL, archive, digest);
+        File blob = new ArchiveStore(directory, Long.MAX_VALUE, true).lookup(URL);
+        assertEquals(digest, ArchiveStore.digestOf(blob));
+        return blob;
+    }
+
+    @Test
+    void intactBlobIsFound() throws IOException {
+        File blob = addArchive("archive");
+
+        assertEquals(blob, new ArchiveStore(directory, Long.MAX_VALUE, false).lookup(URL));
+    }
+
+    @Test
+    void tamperedBlobIsDeletedFromWritableStore() throws IOException {
+        File blob = addArchive("archive");
+        Files.write(blob.toPath(), "planted".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(new ArchiveStore(directory, Long.MAX_VALUE, false).lookup(URL));
+        assertFalse(blob.exists());
+    }
+
+    @Test
+    void tamperedBlobIsIgnoredInReadOnlyStore() throws IOException {
+        File blob = addArchive("archive");
+        Files.write(blob.toPath(), "planted".getBytes(StandardCharsets.UTF_8));
+
+        ArchiveStore shared = new ArchiveStore(directory, 0, true);
+        assertNull(shared.lookup(URL));
+        assertNull(shared.lookup(URL));
+        assertTrue(blob.exists());
+    }
+}
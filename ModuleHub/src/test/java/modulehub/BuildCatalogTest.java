@@ -0,0 +1,138 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Builds the catalog from a stub manifest index whose repositories answer after injected delays,
+ * the slowest first, plus one that never answers.
+ */
+class BuildCatalogTest {
+
+    private static final long LINK_TIMEOUT_MS = 2000;
+    /** Delay of each repository, in index order; null never answers. */
+    private static final Long[] DELAYS_MS = {1500L, 1250L, 1000L, null, 750L, 500L, 250L};
+
+    @TempDir
+    File home;
+
+    private final Properties savedProperties = new Properties();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private ModuleHub hub;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        StringBuilder index = new StringBuilder();
+        for (int i = 0; i < DELAYS_MS.length; i++) {
+            index.append(base).append("/repos/owner/module-").append(i).append("/releases\n");
+        }
+        server.createContext("/index", exchange -> respond(exchange, index.toString()));
+        server.createContext("/repos/", this::releases);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        savedProperties.putAll(System.getProperties());
+        System.setProperty("user.home", home.getPath());
+        System.setProperty("modulehub.manifestUrl", base + "/index");
+        System.setProperty("modulehub.manifestLinkTimeoutMs", Long.toString(LINK_TIMEOUT_MS));
+        hub = new ModuleHub("1.0", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+        release.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        System.setProperties(savedProperties);
+    }
+
+    @Test
+    void slowAndDeadRepositoriesOnlyCostTheirOwnTime() throws Exception {
+        List<SourceResult> progress = new CopyOnWriteArrayList<>();
+        long started = System.nanoTime();
+        ModuleCatalog catalog = hub.buildCatalog(false, progress::add);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        // Sequential loading would take the sum of the delays plus the dead link's timeout.
+        assertTrue(elapsedMs >= LINK_TIMEOUT_MS, "finished before the dead link timed out: " + elapsedMs + " ms");
+        assertTrue(elapsedMs < LINK_TIMEOUT_MS + 1500, "took " + elapsedMs + " ms");
+
+        // Results are reported as they arrive, so the fastest repository comes first.
+        List<SourceResult> results = new ArrayList<>();
+        for (SourceResult result : progress) {
+            if (result.entry != null || result.error != null) {
+                results.add(result);
+            }
+        }
+        assertEquals(DELAYS_MS.length, results.size());
+        assertEquals(DELAYS_MS.length - 1, results.get(0).position);
+        assertNotNull(results.get(results.size() - 1).error, "the dead link should be the last to fail");
+
+        // Modules stay in index order regardless of completion order.
+        List<String> names = new ArrayList<>();
+        for (ModuleCatalog.ModuleEntry module : catalog.modules) {
+            names.add(module.name);
+        }
+        assertEquals(List.of("module 0", "module 1", "module 2", "module 4", "module 5", "module 6"), names);
+    }
+
+    private void releases(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String repository = path.split("/")[3];
+        Long delay = DELAYS_MS[Integer.parseInt(repository.substring("module-".length()))];
+        try {
+            if (delay == null) {
+                release.await();
+            } else {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            exchange.close();
+            return;
+        }
+        JSONObject entry = new JSONObject();
+        entry.put("tag_name", "v1.0.0");
+        entry.put("name", repository + " 1.0.0");
+        entry.put("body", "#AbstractModule-1.0");
+        entry.put("zipball_url", "http://127.0.0.1/" + repository + ".zip");
+        respond(exchange, new JSONArray().put(entry).toString());
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
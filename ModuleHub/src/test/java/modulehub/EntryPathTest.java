@@ -0,0 +1,77 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Maps zipball entry names to paths inside the module directory.
+ */
+class EntryPathTest {
+
+    private static final String MODULE_NAME = "Foo Bar";
+
+    @TempDir
+    File moduleDirectory;
+
+    @Test
+    void stripsEverythingUpToTheModuleName() {
+        assertEquals("dir/README.md", ModuleHub.resolveEntryName("owner/Foo Bar/dir/README.md", MODULE_NAME));
+        assertEquals("README.md", ModuleHub.resolveEntryName("Foo Bar\\README.md", MODULE_NAME));
+    }
+
+    @Test
+    void fallsBackToTheFileName() {
+        assertEquals("README.md", ModuleHub.resolveEntryName("owner-other-0123abc/dir/README.md", MODULE_NAME));
+        assertEquals("Foo Bar", ModuleHub.resolveEntryName("owner/Foo Bar", MODULE_NAME));
+    }
+
+    @Test
+    void skipsEntriesWithoutAName() {
+        assertNull(ModuleHub.resolveEntryName("", MODULE_NAME));
+    }
+
+    @Test
+    void resolvesInsideTheModuleDirectory() throws IOException {
+        Path resolved = ModuleHub.resolveEntryPath(moduleDirectory, "dir/../README.md");
+
+        assertEquals(moduleDirectory.toPath().toAbsolutePath().resolve("README.md"), resolved);
+    }
+
+    @Test
+    void rejectsParentSegmentsThatEscape() {
+        assertThrows(IOException.class, () -> ModuleHub.resolveEntryPath(moduleDirectory, "../evil.txt"));
+        assertThrows(IOException.class, () -> ModuleHub.resolveEntryPath(moduleDirectory, "dir/../../evil.txt"));
+        assertThrows(IOException.class, () -> ModuleHub.resolveEntryPath(moduleDirectory,
+                "../" + moduleDirectory.getName() + "-sibling/evil.txt"));
+    }
+
+    @Test
+    void rejectsAbsolutePaths() {
+        String absolute = new File(moduleDirectory.getParentFile(), "evil.txt").getAbsolutePath();
+        assertTrue(new File(absolute).isAbsolute());
+
+        assertThrows(IOException.class, () -> ModuleHub.resolveEntryPath(moduleDirectory, absolute));
+    }
+
+    @Test
+    void rejectsTheModuleDirectoryItself() {
+        assertThrows(IOException.class, () -> ModuleHub.resolveEntryPath(moduleDirectory, "."));
+        assertThrows(IOException.class, () -> ModuleHub.resolveEntryPath(moduleDirectory, "dir/.."));
+    }
+
+    @Test
+    void zipSlipThroughTheModuleNameIsRejected() {
+        String name = ModuleHub.resolveEntryName("Foo Bar/../../evil.txt", MODULE_NAME);
+        assertEquals("../../evil.txt", name);
+
+        assertThrows(IOException.class, () -> ModuleHub.resolveEntryPath(moduleDirectory, name));
+    }
+}
@@ -0,0 +1,146 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reinstalls a module over a previous install, where only some files changed.
+ */
+class IncrementalInstallTest {
+
+    private static final String MODULE_NAME = "Foo Bar";
+
+    @TempDir
+    File home;
+
+    private final Properties savedProperties = new Properties();
+    private ModuleHub hub;
+    private File target;
+
+    @BeforeEach
+    void setUp() {
+        savedProperties.putAll(System.getProperties());
+        System.setProperty("user.home", home.getPath());
+        hub = new ModuleHub("1.0", false);
+        target = ModuleHub.getModuleDirectory(MODULE_NAME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+        System.setProperties(savedProperties);
+    }
+
+    @Test
+    void recordedFileIsUnchangedOnlyWithTheSameSizeAndCrc() throws IOException {
+        Path file = new File(home, "a.txt").toPath();
+        Files.write(file, bytes("alpha"));
+        InstallManifest manifest = new InstallManifest();
+        manifest.put("a.txt", 5, crc("alpha"));
+
+        assertTrue(manifest.isUnchanged("a.txt", file, 5, crc("alpha")));
+        assertFalse(manifest.isUnchanged("a.txt", file, 6, crc("alpha")));
+        assertFalse(manifest.isUnchanged("a.txt", file, 5, crc("omega")));
+        assertFalse(manifest.isUnchanged("a.txt", file, -1, crc("alpha")));
+        assertFalse(manifest.isUnchanged("b.txt", file, 5, crc("alpha")));
+    }
+
+    @Test
+    void recordedFileIsChangedOnceItIsGoneOrResizedOnDisk() throws IOException {
+        Path file = new File(home, "a.txt").toPath();
+        InstallManifest manifest = new InstallManifest();
+        manifest.put("a.txt", 5, crc("alpha"));
+
+        assertFalse(manifest.isUnchanged("a.txt", file, 5, crc("alpha")));
+        Files.write(file, bytes("alphabet"));
+        assertFalse(manifest.isUnchanged("a.txt", file, 5, crc("alpha")));
+    }
+
+    @Test
+    void manifestSurvivesSaveAndLoad() throws IOException {
+        File manifestFile = new File(home, "module.manifest");
+        InstallManifest manifest = new InstallManifest();
+        manifest.put("dir/a b.txt", 5, crc("alpha"));
+        manifest.save(manifestFile);
+
+        Path file = new File(home, "a.txt").toPath();
+        Files.write(file, bytes("alpha"));
+        assertTrue(InstallManifest.load(manifestFile).isUnchanged("dir/a b.txt", file, 5, crc("alpha")));
+    }
+
+    @Test
+    void unchangedFilesAreReusedAndChangedOnesRewritten() throws Exception {
+        Map<String, String> first = new LinkedHashMap<>();
+        first.put("same.txt", "unchanged");
+        first.put("content.txt", "old text");
+        first.put("size.txt", "short");
+        hub.unzipFile(zipball("first.zip", first), target, MODULE_NAME);
+        Object same = fileKey("same.txt");
+        Object content = fileKey("content.txt");
+        Object size = fileKey("size.txt");
+
+        Map<String, String> second = new LinkedHashMap<>(first);
+        second.put("content.txt", "new text");
+        second.put("size.txt", "much longer");
+        hub.unzipFile(zipball("second.zip", second), target, MODULE_NAME);
+
+        assertEquals(same, fileKey("same.txt"));
+        assertNotEquals(content, fileKey("content.txt"));
+        assertNotEquals(size, fileKey("size.txt"));
+        for (Map.Entry<String, String> file : second.entrySet()) {
+            assertEquals(file.getValue(), Files.readString(new File(target, file.getKey()).toPath()));
+        }
+    }
+
+    /**
+     * Returns what identifies the file on disk (its inode on Unix), which a rewrite changes and a
+     * hard link keeps.
+     */
+    private Object fileKey(String name) throws IOException {
+        Object key = Files.readAttributes(new File(target, name).toPath(), BasicFileAttributes.class).fileKey();
+        assertTrue(key != null, "The file system does not expose file keys");
+        return key;
+    }
+
+    private File zipball(String name, Map<String, String> files) throws IOException {
+        File zip = new File(home, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                out.putNextEntry(new ZipEntry("owner/" + MODULE_NAME + "/" + file.getKey()));
+                out.write(bytes(file.getValue()));
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long crc(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes(text));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,75 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Fetches manifests from a stub server through a manifest cache too small to keep any of them.
+ */
+class ManifestFetchTest {
+
+    private static final String BODY = "[{\"tag_name\":\"v1.0\"}]";
+
+    @TempDir
+    File home;
+
+    private final Properties savedProperties = new Properties();
+    private final AtomicInteger requests = new AtomicInteger();
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private String url;
+    private ModuleHub hub;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/manifest", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+            exchange.close();
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/manifest";
+
+        savedProperties.putAll(System.getProperties());
+        System.setProperty("user.home", home.getPath());
+        System.setProperty("modulehub.manifestCacheMaxBytes", "1");
+        hub = new ModuleHub("1.0", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        System.setProperties(savedProperties);
+    }
+
+    @Test
+    void bodyEvictedAsSoonAsItIsStoredIsStillReturned() throws Exception {
+        assertEquals(BODY, hub.fetchManifestContent(url, false, 0));
+        assertEquals(BODY, hub.fetchManifestContent(url, false, 0));
+        assertEquals(2, requests.get());
+    }
+}
@@ -0,0 +1,185 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Downloads from a stub server that honours Range requests, or not, and can drop a segment's
+ * connection halfway through or send more than the segment asked for.
+ */
+class RangeDownloaderTest {
+
+    private static final int SEGMENTS = 4;
+    private static final byte[] CONTENT = new byte[1024 * 1024];
+    private static final long SEGMENT_SIZE = CONTENT.length / SEGMENTS;
+
+    static {
+        new Random(5).nextBytes(CONTENT);
+    }
+
+    @TempDir
+    File directory;
+
+    private volatile boolean acceptsRanges = true;
+    /** Start offset of the segment whose connection is dropped, while drops remain. */
+    private volatile long dropStart = -1;
+    private final AtomicInteger dropsLeft = new AtomicInteger();
+    /** Start offset of the segment that is followed by {@code overrun} bytes of garbage. */
+    private volatile long overrunStart = -1;
+    private volatile int overrun;
+    /** Range header of every GET, or "" for a plain GET. */
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private String url;
+    private RangeDownloader downloader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/archive.zip", this::serve);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/archive.zip";
+        HttpTransport transport = new HttpTransport(Duration.ofSeconds(5), Duration.ofSeconds(10), 5000, 1);
+        downloader = new RangeDownloader(transport, SEGMENTS, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void resumesOnlyTheDroppedSegment() throws Exception {
+        dropStart = 2 * SEGMENT_SIZE;
+        dropsLeft.set(1);
+        File destination = new File(directory, "archive.zip");
+        File journal = new File(directory, "archive.zip.journal");
+
+        RangeDownloader.Probe probe = downloader.probe(url);
+        assertTrue(probe.acceptsRanges);
+        assertEquals(CONTENT.length, probe.length);
+        assertTrue(downloader.isSegmented(probe));
+        assertThrows(IOException.class, () -> downloader.download(probe, destination, null));
+        assertTrue(journal.isFile(), "the journal should survive the failed attempt");
+        assertEquals(SEGMENTS, ranges.size());
+
+        ranges.clear();
+        downloader.download(downloader.probe(url), destination, null);
+        assertEquals(List.of("bytes=" + dropStart + "-" + (dropStart + SEGMENT_SIZE - 1)), ranges);
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination.toPath()));
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    void segmentThatRunsPastItsEndFailsWithoutWritingPastIt() throws Exception {
+        overrunStart = 3 * SEGMENT_SIZE;
+        overrun = 1000;
+        File last = new File(directory, "last.zip");
+        assertThrows(IOException.class, () -> downloader.download(downloader.probe(url), last, null));
+        assertEquals(CONTENT.length, last.length());
+
+        overrunStart = SEGMENT_SIZE;
+        File destination = new File(directory, "archive.zip");
+        assertThrows(IOException.class, () -> downloader.download(downloader.probe(url), destination, null));
+        byte[] partial = Files.readAllBytes(destination.toPath());
+        for (int i = (int) (2 * SEGMENT_SIZE); i < 2 * SEGMENT_SIZE + overrun; i++) {
+            assertTrue(partial[i] == CONTENT[i] || partial[i] == 0, "byte " + i + " of the next segment was overwritten");
+        }
+
+        overrunStart = -1;
+        ranges.clear();
+        downloader.download(downloader.probe(url), destination, null);
+        assertEquals(List.of("bytes=" + SEGMENT_SIZE + "-" + (2 * SEGMENT_SIZE - 1)), ranges);
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    void fallsBackToOneStreamWithoutRangeSupport() throws Exception {
+        acceptsRanges = false;
+        File destination = new File(directory, "archive.zip");
+
+        RangeDownloader.Probe probe = downloader.probe(url);
+        assertFalse(downloader.isSegmented(probe));
+        downloader.download(probe, destination, null);
+        assertEquals(List.of(""), ranges);
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination.toPath()));
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if (acceptsRanges) {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(CONTENT.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        ranges.add(range == null ? "" : range);
+        int start = 0;
+        int end = CONTENT.length - 1;
+        int status = 200;
+        if (range != null && acceptsRanges) {
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            end = Integer.parseInt(bounds[1]);
+            status = 206;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + CONTENT.length);
+        }
+        int length = end - start + 1;
+        if (start == overrunStart) {
+            // The segment, then garbage that differs from whatever follows it.
+            byte[] overrunBody = new byte[length + overrun];
+            System.arraycopy(CONTENT, start, overrunBody, 0, length);
+            for (int i = length; i < overrunBody.length; i++) {
+                overrunBody[i] = (byte) (start + i < CONTENT.length ? CONTENT[start + i] ^ 0x5a : 0x5a);
+            }
+            exchange.sendResponseHeaders(status, overrunBody.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(overrunBody);
+            }
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        OutputStream body = exchange.getResponseBody();
+        if (start == dropStart && dropsLeft.getAndDecrement() > 0) {
+            // Half the segment, then the connection goes away.
+            body.write(CONTENT, start, length / 2);
+            body.flush();
+            exchange.close();
+            return;
+        }
+        try (body) {
+            body.write(CONTENT, start, length);
+        }
+    }
+}
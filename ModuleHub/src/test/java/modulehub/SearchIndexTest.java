@@ -0,0 +1,116 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Queries a search index built from hand-made documents and from catalog entries.
+ */
+class SearchIndexTest {
+
+    private static SearchIndex.Document document(String module, String... terms) {
+        return new SearchIndex.Document(module, Set.of(terms), true);
+    }
+
+    @Test
+    void queryWordsMatchTermPrefixes() {
+        SearchIndex index = new SearchIndex();
+        index.add(document("Weather", "weather", "radar"), 0);
+        index.add(document("Clock", "clock", "alarm"), 1);
+
+        assertEquals(List.of("Weather"), index.search("wea", false));
+        assertEquals(List.of("Weather"), index.search("WEATHER", false));
+        assertEquals(List.of("Clock"), index.search("a", false));
+        assertEquals(List.of(), index.search("weathers", false));
+        assertEquals(List.of(), index.search("eather", false));
+    }
+
+    @Test
+    void shortAndLongPrefixesAgree() {
+        SearchIndex index = new SearchIndex();
+        index.add(document("Weather", "weather"), 0);
+        index.add(document("Web", "web"), 1);
+        index.add(document("Clock", "clock"), 2);
+
+        assertEquals(List.of("Weather", "Web"), index.search("w", false));
+        assertEquals(List.of("Weather", "Web"), index.search("we", false));
+        assertEquals(List.of("Weather"), index.search("wea", false));
+    }
+
+    @Test
+    void everyQueryWordMustMatch() {
+        SearchIndex index = new SearchIndex();
+        index.add(document("Weather", "weather", "radar"), 0);
+        index.add(document("Radio", "radio", "tuner"), 1);
+        index.add(document("Storm", "weather", "storm"), 2);
+
+        assertEquals(List.of("Weather", "Radio"), index.search("ra", false));
+        assertEquals(List.of("Weather"), index.search("ra weather", false));
+        assertEquals(List.of("Weather", "Storm"), index.search("  weather,weather ", false));
+        assertEquals(List.of(), index.search("radar storm", false));
+    }
+
+    @Test
+    void compatibleOnlyFiltersModules() {
+        SearchIndex index = new SearchIndex();
+        index.add(new SearchIndex.Document("Old", Set.of("weather"), false), 0);
+        index.add(document("New", "weather"), 1);
+
+        assertEquals(List.of("Old", "New"), index.search("weather", false));
+        assertEquals(List.of("New"), index.search("weather", true));
+    }
+
+    @Test
+    void addingMoreTermsForAModuleExtendsIt() {
+        SearchIndex index = new SearchIndex();
+        index.add(new SearchIndex.Document("Weather", Set.of("weather"), false), 0);
+        assertEquals(List.of(), index.search("radar", false));
+
+        index.add(new SearchIndex.Document("Weather", Set.of("radar"), true));
+
+        assertEquals(List.of("Weather"), index.search("radar", false));
+        assertEquals(List.of("Weather"), index.search("weather radar", true));
+        assertEquals(List.of("Weather"), index.search("", false));
+    }
+
+    @Test
+    void documentsAreTokenizedFromTheCatalog() {
+        ModuleCatalog.Release release = new ModuleCatalog.Release("Spring Update", "v2.1", true, "", "",
+                "Adds the #AbstractModule-1.0 marker and a storm-radar view.", "");
+        SearchIndex index = new SearchIndex();
+        index.add(SearchIndex.documentOf(new ModuleCatalog.ModuleEntry("Weather Station", List.of(release),
+                List.of())), 0);
+
+        assertEquals(List.of("Weather Station"), index.search("station spring", false));
+        assertEquals(List.of("Weather Station"), index.search("v2", false));
+        assertEquals(List.of("Weather Station"), index.search("storm radar", true));
+        assertEquals(List.of(), index.search("abstractmodule-2", false));
+    }
+
+    @Test
+    void resultsFollowCatalogOrderWhateverTheArrivalOrder() {
+        SearchIndex index = new SearchIndex();
+        index.add(document("Gamma", "weather"), 2);
+        index.add(document("Alpha", "weather"), 0);
+        index.add(document("Delta", "weather"), 3);
+        index.add(document("Beta", "weather"), 1);
+
+        assertEquals(List.of("Alpha", "Beta", "Gamma", "Delta"), index.search("weather", false));
+        assertEquals(List.of("Alpha", "Beta", "Gamma", "Delta"), index.search("", false));
+    }
+
+    @Test
+    void mergedModuleTakesTheEarliestPosition() {
+        SearchIndex index = new SearchIndex();
+        index.add(document("Fork", "weather"), 3);
+        index.add(document("Other", "weather"), 1);
+        index.add(document("Fork", "radar"), 0);
+        index.add(document("Other", "radar"));
+
+        assertEquals(List.of("Fork", "Other"), index.search("weather", false));
+        assertEquals(List.of("Fork", "Other"), index.search("radar", false));
+    }
+}
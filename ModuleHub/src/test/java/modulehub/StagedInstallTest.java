@@ -0,0 +1,157 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StagedInstallTest {
+
+    @TempDir
+    File root;
+
+    @Test
+    void commitSwapsTheStagedTreeInAndKeepsThePreviousVersion() throws Exception {
+        File live = new File(root, "Module");
+        write(live, "module.txt", "v1");
+        try (StagedInstall stage = StagedInstall.begin(live)) {
+            stageVerified(stage, "module.txt", "v2");
+            stage.commit();
+        }
+        assertEquals("v2", read(live, "module.txt"));
+        assertEquals("v1", read(previous(live), "module.txt"));
+        assertFalse(StagedInstall.siblingOf(live, "staging").exists());
+
+        try (StagedInstall stage = StagedInstall.begin(live)) {
+            stageVerified(stage, "module.txt", "v3");
+            stage.commit();
+        }
+        assertEquals("v3", read(live, "module.txt"));
+        assertEquals("v2", read(previous(live), "module.txt"));
+        assertEquals(2, root.list().length, "only the live and previous versions should remain");
+    }
+
+    @Test
+    void rollbackExchangesTheLiveAndPreviousVersions() throws Exception {
+        File live = new File(root, "Module");
+        write(live, "module.txt", "v1");
+        try (StagedInstall stage = StagedInstall.begin(live)) {
+            stageVerified(stage, "module.txt", "v2");
+            stage.commit();
+        }
+        assertTrue(StagedInstall.hasPrevious(live));
+
+        StagedInstall.rollback(live);
+        assertEquals("v1", read(live, "module.txt"));
+        assertEquals("v2", read(previous(live), "module.txt"));
+        StagedInstall.rollback(live);
+        assertEquals("v2", read(live, "module.txt"));
+        assertFalse(StagedInstall.siblingOf(live, "swap").exists());
+    }
+
+    @Test
+    void rollbackWithoutPreviousVersionFails() throws Exception {
+        File live = new File(root, "Module");
+        write(live, "module.txt", "v1");
+        assertThrows(IOException.class, () -> StagedInstall.rollback(live));
+        assertEquals("v1", read(live, "module.txt"));
+    }
+
+    @Test
+    void failedVerificationLeavesTheLiveDirectoryUntouched() throws Exception {
+        File live = new File(root, "Module");
+        write(live, "module.txt", "v1");
+        try (StagedInstall stage = StagedInstall.begin(live)) {
+            Path staged = write(stage.stagingDir, "module.txt", "corrupt");
+            stage.verify(staged, 2, crc("v2"));
+            assertThrows(IOException.class, stage::awaitVerification);
+        }
+        assertEquals("v1", read(live, "module.txt"));
+        assertFalse(previous(live).exists());
+        assertFalse(StagedInstall.siblingOf(live, "staging").exists());
+    }
+
+    @Test
+    void beginDiscardsALeftoverStagingDirectory() throws Exception {
+        File live = new File(root, "Module");
+        write(live, "module.txt", "v1");
+        write(StagedInstall.siblingOf(live, "staging"), "stale.txt", "stale");
+        try (StagedInstall stage = StagedInstall.begin(live)) {
+            assertFalse(stage.recovered);
+            assertEquals(0, stage.stagingDir.list().length);
+        }
+        assertEquals("v1", read(live, "module.txt"));
+    }
+
+    @Test
+    void recoversARollbackInterruptedBeforeThePreviousVersionMovedIn() throws Exception {
+        // The live directory has been renamed to .swap and nothing has taken its place yet.
+        File live = new File(root, "Module");
+        write(StagedInstall.siblingOf(live, "swap"), "module.txt", "v2");
+        write(previous(live), "module.txt", "v1");
+
+        assertTrue(StagedInstall.recover(live));
+        assertEquals("v2", read(live, "module.txt"));
+        assertEquals("v1", read(previous(live), "module.txt"));
+        assertFalse(StagedInstall.siblingOf(live, "swap").exists());
+    }
+
+    @Test
+    void recoversARollbackInterruptedBeforeTheSwapBecamePrevious() throws Exception {
+        // The previous version is live; the version it replaced is still parked in .swap.
+        File live = new File(root, "Module");
+        write(live, "module.txt", "v1");
+        write(StagedInstall.siblingOf(live, "swap"), "module.txt", "v2");
+
+        assertFalse(StagedInstall.recover(live));
+        assertEquals("v1", read(live, "module.txt"));
+        assertEquals("v2", read(previous(live), "module.txt"));
+    }
+
+    @Test
+    void recoversACommitInterruptedAfterTheLiveVersionMovedAway() throws Exception {
+        File live = new File(root, "Module");
+        write(previous(live), "module.txt", "v1");
+        write(StagedInstall.siblingOf(live, "staging"), "module.txt", "v2");
+
+        try (StagedInstall stage = StagedInstall.begin(live)) {
+            assertTrue(stage.recovered);
+        }
+        assertEquals("v1", read(live, "module.txt"));
+        assertFalse(previous(live).exists());
+    }
+
+    private static void stageVerified(StagedInstall stage, String name, String content) throws Exception {
+        Path staged = write(stage.stagingDir, name, content);
+        stage.verify(staged, content.length(), crc(content));
+        stage.awaitVerification();
+    }
+
+    private static File previous(File live) {
+        return StagedInstall.siblingOf(live, "previous");
+    }
+
+    private static Path write(File directory, String name, String content) throws IOException {
+        Files.createDirectories(directory.toPath());
+        return Files.write(new File(directory, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File directory, String name) throws IOException {
+        return Files.readString(new File(directory, name).toPath());
+    }
+
+    private static long crc(String content) {
+        CRC32 crc = new CRC32();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
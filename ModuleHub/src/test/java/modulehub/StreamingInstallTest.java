@@ -0,0 +1,113 @@
+package modulehub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Installs zipballs streamed from a stub server, where several entries map to the same file because
+ * the module name does not appear in the zipball prefix.
+ */
+class StreamingInstallTest {
+
+    private static final String MODULE_NAME = "Foo Bar";
+
+    @TempDir
+    File home;
+
+    private final Properties savedProperties = new Properties();
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private volatile byte[] archive;
+    private String url;
+    private ModuleHub hub;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/archive.zip", exchange -> {
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(archive.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, archive.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(archive);
+                }
+            }
+            exchange.close();
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/archive.zip";
+
+        savedProperties.putAll(System.getProperties());
+        System.setProperty("user.home", home.getPath());
+        hub = new ModuleHub("1.0", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        System.setProperties(savedProperties);
+    }
+
+    @Test
+    void lastOfSeveralEntriesForTheSamePathWins() throws Exception {
+        archive = zipball(50);
+        File target = ModuleHub.getModuleDirectory(MODULE_NAME);
+        for (int attempt = 0; attempt < 5; attempt++) {
+            hub.installRelease(url, target, MODULE_NAME, null);
+            assertEquals(readme(49), Files.readString(new File(target, "README.md").toPath()));
+        }
+    }
+
+    @Test
+    void archiveExtractionAgreesWithStreaming() throws Exception {
+        archive = zipball(50);
+        File zip = new File(home, "archive.zip");
+        Files.write(zip.toPath(), archive);
+        File target = ModuleHub.getModuleDirectory(MODULE_NAME);
+        hub.unzipFile(zip, target, MODULE_NAME);
+        assertEquals(readme(49), Files.readString(new File(target, "README.md").toPath()));
+    }
+
+    /**
+     * Returns a zipball whose READMEs, one per directory, all resolve to the module's README.md.
+     */
+    private static byte[] zipball(int directories) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < directories; i++) {
+                out.putNextEntry(new ZipEntry("owner-Foo-Bar-0123abc/dir" + i + "/README.md"));
+                out.write(readme(i).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String readme(int directory) {
+        return ("Directory " + directory + "\n").repeat(100);
+    }
+}
@@ -0,0 +1,29 @@
+package modulehub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Takes the usual JMH options, but unless {@code -rf} says
+ * otherwise writes the results as JSON to {@code jmh-result.json}, so runs can be compared across
+ * commits:
+ * <pre>
+ *   mvn -B package -pl benchmarks -am
+ *   java -jar benchmarks/target/benchmarks.jar [regexp...] [-rff FILE]
+ * </pre>
+ * The checked-in fixtures are regenerated with {@link Fixtures#main}.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.addAll(0, Arrays.asList("-rf", "json"));
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,68 @@
+package modulehub;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extracting a zipball into the module directory, for each zipball shape, in parallel as installs do
+ * and on a single thread as the baseline. Every invocation starts from an empty module directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractBenchmark {
+
+    @Param({"LARGE", "MEDIUM", "TINY"})
+    public String shape;
+
+    private File home;
+    private ModuleHub hub;
+    private File zipball;
+    private File target;
+
+    @Setup
+    public void setUp() throws Exception {
+        home = Fixtures.scratchHome();
+        hub = new ModuleHub(Fixtures.HOST_VERSION, false);
+        zipball = Fixtures.zipball(home, Fixtures.Shape.valueOf(shape));
+        target = ModuleHub.getModuleDirectory(Fixtures.MODULE_NAME);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() throws Exception {
+        Fixtures.resetInstall(hub, target);
+        target.mkdirs();
+    }
+
+    @TearDown
+    public void tearDown() {
+        hub.close();
+        ModuleHub.deleteRecursively(home);
+    }
+
+    @Benchmark
+    public void extract() throws Exception {
+        hub.unzipFile(zipball, target, Fixtures.MODULE_NAME);
+    }
+
+    @Benchmark
+    public void extractSequential() throws Exception {
+        hub.unzipFile(zipball, target, Fixtures.MODULE_NAME, 1);
+    }
+}
@@ -0,0 +1,239 @@
+package modulehub;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Inputs shared by the benchmarks. The manifest index and first release page of each repository are
+ * checked in under {@code fixtures/}, written by {@link #main} from a fixed seed, so every commit is
+ * measured against the same bytes: 300 repositories, every tenth a fork that merges into the module
+ * before it, with between one and a full page of GitHub-style releases each. Zipballs are too large
+ * to check in and are generated from the same seed during set-up instead.
+ */
+final class Fixtures {
+
+    static final long SEED = 20240611L;
+    static final String MODULE_NAME = "BenchModule";
+    static final String HOST_VERSION = "1.0";
+    private static final int REPOSITORIES = 300;
+    private static final String INDEX = "index.txt";
+    private static final String RELEASE_PAGES = "release-pages.json.gz";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Zipball shapes, from a few large files to tens of thousands of tiny ones.
+     */
+    enum Shape {
+        LARGE(4, 16 * 1024 * 1024),
+        MEDIUM(500, 64 * 1024),
+        TINY(20000, 256);
+
+        final int files;
+        final int fileSize;
+
+        Shape(int files, int fileSize) {
+            this.files = files;
+            this.fileSize = fileSize;
+        }
+    }
+
+    /**
+     * Returns the manifest index as the pastebin serves it: one repository releases link per line.
+     */
+    static String index() throws IOException {
+        try (InputStream in = open(INDEX)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns the first release page of every repository in the index, keyed by its page URL.
+     */
+    static Map<String, String> releasePages() throws IOException {
+        JSONObject pages;
+        try (InputStream in = new GZIPInputStream(open(RELEASE_PAGES))) {
+            pages = new JSONObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String link : index().trim().split("\n")) {
+            result.put(ModuleHub.releasePageUrl(link, 1), pages.getJSONArray(link).toString());
+        }
+        return result;
+    }
+
+    /**
+     * Returns every release tag in the fixtures, in index order.
+     */
+    static List<String> tags() throws IOException {
+        List<String> tags = new ArrayList<>();
+        for (String page : releasePages().values()) {
+            JSONArray releases = new JSONArray(page);
+            for (int i = 0; i < releases.length(); i++) {
+                tags.add(releases.getJSONObject(i).getString("tag_name"));
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Points {@code user.home} at a new scratch directory, which every cache, store and module path
+     * derives from, and returns it. Must run before a {@link ModuleHub} is created.
+     */
+    static File scratchHome() throws IOException {
+        File home = Files.createTempDirectory("modulehub-bench").toFile();
+        System.setProperty("user.home", home.getPath());
+        return home;
+    }
+
+    /**
+     * Writes a GitHub-style zipball of the given shape. Contents are half random, half repetitive,
+     * so they compress roughly like source and assets.
+     */
+    static File zipball(File directory, Shape shape) throws IOException {
+        Random random = new Random(SEED + shape.ordinal());
+        File zip = new File(directory, shape.name().toLowerCase() + ".zip");
+        byte[] content = new byte[shape.fileSize];
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zip)))) {
+            String root = "bench-" + MODULE_NAME + "-0123abc/";
+            for (int i = 0; i < shape.files; i++) {
+                random.nextBytes(content);
+                Arrays.fill(content, shape.fileSize / 2, shape.fileSize, (byte) ('a' + i % 26));
+                out.putNextEntry(new ZipEntry(root + "dir" + i % 100 + "/file" + i + ".bin"));
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    /**
+     * Removes an installed module, its previous version and install manifests, so the next install
+     * starts from nothing.
+     */
+    static void resetInstall(ModuleHub hub, File target) throws IOException {
+        ModuleHub.deleteRecursively(target);
+        ModuleHub.deleteRecursively(StagedInstall.siblingOf(target, "previous"));
+        Files.deleteIfExists(hub.getInstallManifestFile(MODULE_NAME).toPath());
+        Files.deleteIfExists(hub.getInstallManifestFile(MODULE_NAME, ".previous").toPath());
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (in == null) {
+            throw new FileNotFoundException("Missing benchmark fixture " + name);
+        }
+        return in;
+    }
+
+    /**
+     * Regenerates the checked-in fixtures into the given directory, normally
+     * {@code benchmarks/src/main/resources/fixtures}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: Fixtures <fixtures-dir>");
+            System.exit(2);
+        }
+        File directory = new File(args[0]);
+        Random random = new Random(SEED);
+        StringBuilder index = new StringBuilder();
+        JSONObject pages = new JSONObject();
+        for (int repository = 0; repository < REPOSITORIES; repository++) {
+            boolean fork = repository % 10 == 9;
+            String owner = fork ? "fork-" + repository : "owner-" + repository % 40;
+            String link = "https://api.github.com/repos/" + owner + "/module-" + (fork ? repository - 1 : repository)
+                    + "/releases";
+            index.append(link).append('\n');
+            pages.put(link, releasePage(random, link));
+        }
+        write(new File(directory, INDEX), index.toString().getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(compressed), StandardCharsets.UTF_8)) {
+            pages.write(out);
+        }
+        write(new File(directory, RELEASE_PAGES), compressed.toByteArray());
+    }
+
+    /**
+     * Returns a page of releases with the fields and sizes the GitHub API returns, newest first.
+     * A third of the repositories fill the page, so their catalog entries have a next page.
+     */
+    private static JSONArray releasePage(Random random, String link) {
+        String repository = link.substring("https://api.github.com/repos/".length(), link.length() - "/releases".length());
+        int count = random.nextInt(3) == 0 ? ModuleHub.RELEASE_PAGE_SIZE : 1 + random.nextInt(ModuleHub.RELEASE_PAGE_SIZE - 1);
+        int major = random.nextInt(4);
+        int minor = 1 + random.nextInt(20);
+        int patch = count;
+        boolean prefixed = random.nextBoolean();
+        JSONArray releases = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            String tag = (prefixed ? "v" : "") + major + "." + minor + "." + patch + (random.nextInt(10) == 0 ? "-beta" : "");
+            long id = 100000000L + random.nextInt(90000000);
+            JSONObject author = new JSONObject();
+            author.put("login", repository.substring(0, repository.indexOf('/')));
+            author.put("id", 1000 + random.nextInt(1000000));
+            author.put("avatar_url", "https://avatars.githubusercontent.com/u/" + author.getInt("id") + "?v=4");
+            author.put("html_url", "https://github.com/" + author.getString("login"));
+            author.put("type", "User");
+            author.put("site_admin", false);
+            StringBuilder body = new StringBuilder("## Changes\n");
+            for (int line = 0, lines = 3 + random.nextInt(25); line < lines; line++) {
+                body.append("- Fixed issue #").append(random.nextInt(5000)).append(" in the ")
+                        .append(Integer.toString(random.nextInt(1 << 20), 36)).append(" handler\n");
+            }
+            if (random.nextInt(3) != 0) {
+                body.append("\n#AbstractModule-").append(random.nextInt(3)).append(".0");
+            }
+            String day = String.format("2024-%02d-%02dT%02d:%02d:00Z", 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    random.nextInt(24), random.nextInt(60));
+            JSONObject release = new JSONObject();
+            release.put("url", "https://api.github.com/repos/" + repository + "/releases/" + id);
+            release.put("html_url", "https://github.com/" + repository + "/releases/tag/" + tag);
+            release.put("id", id);
+            release.put("author", author);
+            release.put("tag_name", tag);
+            release.put("target_commitish", "main");
+            release.put("name", random.nextInt(8) == 0 ? "" : "Release " + tag);
+            release.put("draft", false);
+            release.put("prerelease", tag.endsWith("-beta"));
+            release.put("created_at", day);
+            release.put("published_at", day);
+            release.put("assets", new JSONArray());
+            release.put("tarball_url", "https://api.github.com/repos/" + repository + "/tarball/" + tag);
+            release.put("zipball_url", "https://api.github.com/repos/" + repository + "/zipball/" + tag);
+            release.put("body", body.toString());
+            releases.put(release);
+            if (patch > 0) {
+                patch--;
+            } else if (minor > 0) {
+                minor--;
+                patch = 9;
+            } else {
+                major = Math.max(0, major - 1);
+                minor = 9;
+                patch = 9;
+            }
+        }
+        return releases;
+    }
+
+    private static void write(File target, byte[] content) throws IOException {
+        target.getParentFile().mkdirs();
+        ModuleHub.writeAtomically(target, content);
+    }
+}
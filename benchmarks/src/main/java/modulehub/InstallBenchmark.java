@@ -0,0 +1,92 @@
+package modulehub;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end install latency, offline: download from a loopback HTTP server, digest, archive store,
+ * staged extraction and the swap into place. The archive store is emptied before every invocation,
+ * so each one downloads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstallBenchmark {
+
+    @Param({"LARGE", "MEDIUM", "TINY"})
+    public String shape;
+
+    private File home;
+    private ModuleHub hub;
+    private HttpServer server;
+    private String downloadUrl;
+    private File target;
+
+    @Setup
+    public void setUp() throws Exception {
+        home = Fixtures.scratchHome();
+        hub = new ModuleHub(Fixtures.HOST_VERSION, false);
+        File zipball = Fixtures.zipball(home, Fixtures.Shape.valueOf(shape));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(zipball.length()));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, zipball.length());
+                try (OutputStream body = exchange.getResponseBody()) {
+                    Files.copy(zipball.toPath(), body);
+                }
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bench-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        downloadUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/" + zipball.getName();
+        target = ModuleHub.getModuleDirectory(Fixtures.MODULE_NAME);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() throws Exception {
+        Fixtures.resetInstall(hub, target);
+        ModuleHub.deleteRecursively(hub.archiveStore.directory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        hub.close();
+        ModuleHub.deleteRecursively(home);
+    }
+
+    @Benchmark
+    public String install() throws Exception {
+        return hub.installRelease(downloadUrl, target, Fixtures.MODULE_NAME, null);
+    }
+}
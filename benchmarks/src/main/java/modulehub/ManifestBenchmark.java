@@ -0,0 +1,84 @@
+package modulehub;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Turning the fixture manifests into a catalog: parsing every release page, merging the entries
+ * (forks included) in index order, and the whole load from a warm manifest cache as the window and
+ * command line do at start-up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManifestBenchmark {
+
+    private File home;
+    private ModuleHub hub;
+    private Map<String, String> pages;
+    private List<ModuleCatalog.ModuleEntry> entries;
+
+    @Setup
+    public void setUp() throws Exception {
+        home = Fixtures.scratchHome();
+        pages = Fixtures.releasePages();
+        ManifestCache cache = new ManifestCache(new File(ModuleHub.getModuleRootPath(), ".modulehub-cache"),
+                Long.MAX_VALUE, Long.MAX_VALUE, false);
+        cache.put(ModuleHub.MANIFEST_URL, Fixtures.index(), null, null);
+        for (Map.Entry<String, String> page : pages.entrySet()) {
+            cache.put(page.getKey(), page.getValue(), null, null);
+        }
+        hub = new ModuleHub(Fixtures.HOST_VERSION, false);
+        entries = new ArrayList<>(pages.size());
+        for (Map.Entry<String, String> page : pages.entrySet()) {
+            entries.add(new ModuleCatalog.ModuleEntry(ModuleHub.extractRepositoryName(page.getKey()),
+                    hub.parseReleasePage(page.getValue(), page.getKey()), Collections.emptyList()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        hub.close();
+        ModuleHub.deleteRecursively(home);
+    }
+
+    @Benchmark
+    public void parseReleasePages(Blackhole blackhole) {
+        for (Map.Entry<String, String> page : pages.entrySet()) {
+            blackhole.consume(hub.parseReleasePage(page.getValue(), page.getKey()));
+        }
+    }
+
+    @Benchmark
+    public ModuleCatalog mergeEntries() {
+        ModuleCatalog.Builder builder = new ModuleCatalog.Builder();
+        for (int position = 0; position < entries.size(); position++) {
+            builder.add(entries.get(position), position);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public ModuleCatalog buildFromCache() throws Exception {
+        return hub.buildCatalog(true, null);
+    }
+}
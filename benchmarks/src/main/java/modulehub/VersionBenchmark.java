@@ -0,0 +1,56 @@
+package modulehub;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing and ordering every release tag in the fixture manifests, as building the catalog and the
+ * outdated check do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VersionBenchmark {
+
+    private List<String> tags;
+    private int[][] versions;
+
+    @Setup
+    public void setUp() throws IOException {
+        tags = Fixtures.tags();
+        versions = new int[tags.size()][];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = ModuleCatalog.parseVersion(tags.get(i));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String tag : tags) {
+            blackhole.consume(ModuleCatalog.parseVersion(tag));
+        }
+    }
+
+    @Benchmark
+    public int[][] sort() {
+        int[][] copy = versions.clone();
+        Arrays.sort(copy, ModuleCatalog::compareVersions);
+        return copy;
+    }
+}
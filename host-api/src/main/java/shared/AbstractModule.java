@@ -0,0 +1,34 @@
+package shared;
+
+/**
+ * Stand-in for the base class the host desktop gives its modules, so they build and run outside the
+ * desktop. Only the members modules use are declared; the desktop provides the real class at run time.
+ */
+public abstract class AbstractModule {
+
+    public abstract void start();
+
+    public abstract void bringToFront();
+
+    public abstract void hideModule();
+
+    public abstract void showModule();
+
+    public abstract boolean isVisible();
+
+    /**
+     * Releases the module's resources; called once by {@link #close()}.
+     */
+    protected abstract void onClose();
+
+    public void close() {
+        onClose();
+    }
+
+    /**
+     * Returns the version of the module API, which releases name in their compatibility marker.
+     */
+    public String getVersion() {
+        return "1.0";
+    }
+}